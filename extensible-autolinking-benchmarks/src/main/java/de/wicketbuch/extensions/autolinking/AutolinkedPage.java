@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupCacheKeyProvider;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+
+/**
+ * Page with a generated template, see {@link Templates#page(int)}.
+ */
+public class AutolinkedPage extends WebPage implements IMarkupResourceStreamProvider, IMarkupCacheKeyProvider
+{
+	private final int tagCount;
+
+	public AutolinkedPage(int tagCount)
+	{
+		this.tagCount = tagCount;
+	}
+
+	@Override
+	public IResourceStream getMarkupResourceStream(MarkupContainer container, Class<?> containerClass)
+	{
+		return new StringResourceStream(Templates.page(tagCount), "text/html");
+	}
+
+	@Override
+	public String getCacheKey(MarkupContainer container, Class<?> containerClass)
+	{
+		return AutolinkedPage.class.getName() + "-" + tagCount;
+	}
+}
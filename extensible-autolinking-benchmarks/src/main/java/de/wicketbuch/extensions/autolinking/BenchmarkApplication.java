@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import org.apache.wicket.mock.MockApplication;
+
+/**
+ * Application for the benchmarks that render or process with Wicket, with {@link ExtensibleAutolinker} configured
+ * and all of its caches disabled, so that every invocation does the full work.
+ */
+class BenchmarkApplication extends MockApplication
+{
+	private final boolean resolveAtParseTime;
+
+	private final boolean componentFreeRendering;
+
+	private ExtensibleAutolinker autolinker;
+
+	BenchmarkApplication(boolean resolveAtParseTime)
+	{
+		this(resolveAtParseTime, false);
+	}
+
+	BenchmarkApplication(boolean resolveAtParseTime, boolean componentFreeRendering)
+	{
+		this.resolveAtParseTime = resolveAtParseTime;
+		this.componentFreeRendering = componentFreeRendering;
+	}
+
+	@Override
+	protected void init()
+	{
+		super.init();
+		autolinker = ExtensibleAutolinker.configure(this)
+				.setCssCacheSize(0)
+				.setUsePrecompiledCss(false)
+				.setResolveAtParseTime(resolveAtParseTime)
+				.setComponentFreeRendering(componentFreeRendering)
+				.addScopePrefix(BenchmarkApplication.class, "bench");
+	}
+
+	ExtensibleAutolinker getAutolinker()
+	{
+		return autolinker;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of <code>benchmarks.jar</code>. Takes the same options as JMH's own main class, but writes the results
+ * as JSON to {@value #DEFAULT_RESULT_FILE} unless told otherwise via <code>-rf</code> and <code>-rff</code>, so that
+ * runs of different releases can be compared.
+ */
+public final class BenchmarkRunner
+{
+	static final String DEFAULT_RESULT_FILE = "benchmark-results.json";
+
+	private BenchmarkRunner()
+	{
+	}
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException
+	{
+		final CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp())
+		{
+			commandLine.showHelp();
+			return;
+		}
+		if (commandLine.shouldList())
+		{
+			new Runner(commandLine).list();
+			return;
+		}
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue())
+		{
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue())
+		{
+			options.result(DEFAULT_RESULT_FILE);
+		}
+		new Runner(options.build()).run();
+	}
+}
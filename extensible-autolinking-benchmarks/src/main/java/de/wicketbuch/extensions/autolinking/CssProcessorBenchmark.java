@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CssProcessor#process(String, Class, String)} on stylesheets of different sizes, with caching
+ * disabled. Every URL in the stylesheets goes through a resolver and is rendered with
+ * {@link org.apache.wicket.request.cycle.RequestCycle#urlFor(org.apache.wicket.request.resource.ResourceReference,
+ * org.apache.wicket.request.mapper.parameter.PageParameters)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CssProcessorBenchmark
+{
+	/**
+	 * <code>small</code> is a typical page-specific stylesheet, <code>medium</code> is about the size of Bootstrap 3,
+	 * <code>huge</code> is ten times that. The others are the real stylesheets bundled with {@link Stylesheets}, whose
+	 * relative URLs are looked up as package resources.
+	 */
+	@Param({"small", "medium", "huge", Stylesheets.BOOTSTRAP, Stylesheets.FONT_AWESOME})
+	String size;
+
+	private WicketTester tester;
+
+	private CssProcessor cssProcessor;
+
+	private String css;
+
+	@Setup
+	public void setUp()
+	{
+		final BenchmarkApplication application = new BenchmarkApplication(false);
+		tester = new WicketTester(application);
+		cssProcessor = application.getAutolinker().cssProcessor;
+		if ("small".equals(size))
+		{
+			css = Stylesheets.generate(2 * 1024, "bench:/");
+		}
+		else if ("medium".equals(size))
+		{
+			css = Stylesheets.generate(Stylesheets.BOOTSTRAP_SIZE, "bench:/");
+		}
+		else if ("huge".equals(size))
+		{
+			css = Stylesheets.generate(10 * Stylesheets.BOOTSTRAP_SIZE, "bench:/");
+		}
+		else
+		{
+			css = Stylesheets.load(size);
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	@Benchmark
+	public String process()
+	{
+		return cssProcessor.process(css, CssProcessorBenchmark.class, "css/site.css");
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link CssUrlScanner} with the regular expression that {@link CssProcessor} used before. Both replace
+ * every URL with itself, so only the cost of finding the URLs and copying the rest is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CssUrlScannerBenchmark
+{
+	private static final Pattern URL_PATTERN = Pattern
+			.compile("url\\([ ]*['|\"]?([^ ]*?)['|\"]?[ ]*\\)");
+
+	private static final CssUrlScanner.UrlRewriter IDENTITY = new CssUrlScanner.UrlRewriter()
+	{
+		@Override
+		public CharSequence rewrite(String url)
+		{
+			return url;
+		}
+	};
+
+	/**
+	 * <code>generated</code> is a generated stylesheet of {@link Stylesheets#BOOTSTRAP_SIZE}, <code>generated10</code>
+	 * is ten times that. The others are the real stylesheets bundled with {@link Stylesheets}.
+	 */
+	@Param({"generated", "generated10", Stylesheets.BOOTSTRAP, Stylesheets.FONT_AWESOME})
+	String stylesheet;
+
+	private String css;
+
+	@Setup
+	public void setUp()
+	{
+		if ("generated".equals(stylesheet))
+		{
+			css = Stylesheets.generate(Stylesheets.BOOTSTRAP_SIZE, "");
+		}
+		else if ("generated10".equals(stylesheet))
+		{
+			css = Stylesheets.generate(10 * Stylesheets.BOOTSTRAP_SIZE, "");
+		}
+		else
+		{
+			css = Stylesheets.load(stylesheet);
+		}
+	}
+
+	@Benchmark
+	public String regex()
+	{
+		Matcher matcher = URL_PATTERN.matcher(css);
+		StringBuffer output = new StringBuffer();
+		while (matcher.find())
+		{
+			matcher.appendReplacement(output, "url('" + matcher.group(1) + "')");
+		}
+		matcher.appendTail(output);
+		return output.toString();
+	}
+
+	@Benchmark
+	public String scanner()
+	{
+		return new CssUrlScanner(IDENTITY).process(css);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing a large template with the markup filter of {@link ExtensibleAutolinker}, compared to parsing it
+ * with Wicket's default markup parser. The <code>icons</code> template consists almost entirely of autolinked tags,
+ * the <code>application</code> template mostly of tags the filter has to reject.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MarkupFilterBenchmark
+{
+	@Param({"100", "1000"})
+	int tagCount;
+
+	@Param({"icons", "application"})
+	String templateType;
+
+	@Param({"false", "true"})
+	boolean resolveAtParseTime;
+
+	private WicketTester tester;
+
+	private MarkupFactory autolinkingFactory;
+
+	private MarkupFactory plainFactory;
+
+	private String template;
+
+	@Setup
+	public void setUp()
+	{
+		final BenchmarkApplication application = new BenchmarkApplication(resolveAtParseTime);
+		tester = new WicketTester(application);
+		autolinkingFactory = application.getMarkupSettings().getMarkupFactory();
+		plainFactory = new MarkupFactory();
+		template = "icons".equals(templateType) ? Templates.page(tagCount) : Templates.application(tagCount);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	@Benchmark
+	public Markup autolinker() throws IOException, ResourceStreamNotFoundException
+	{
+		return autolinkingFactory.newMarkupParser(newMarkupResourceStream()).parse();
+	}
+
+	@Benchmark
+	public Markup wicket() throws IOException, ResourceStreamNotFoundException
+	{
+		return plainFactory.newMarkupParser(newMarkupResourceStream()).parse();
+	}
+
+	private MarkupResourceStream newMarkupResourceStream()
+	{
+		return new MarkupResourceStream(new StringResourceStream(template, "text/html"));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full render of a page with {@link #tagCount} autolinked tags. The markup is parsed during setup and then
+ * taken from Wicket's markup cache, so this is the cost every request pays. Compare {@link #componentFreeRendering}
+ * <code>false</code> and <code>true</code> to see how much render time rendering without components saves. The size
+ * of pages in the page store is the same either way, because the autolink components are removed on detach.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageRenderBenchmark
+{
+	@Param({"10", "100", "1000"})
+	int tagCount;
+
+	@Param({"false", "true"})
+	boolean resolveAtParseTime;
+
+	@Param({"false", "true"})
+	boolean componentFreeRendering;
+
+	private WicketTester tester;
+
+	@Setup
+	public void setUp()
+	{
+		tester = new WicketTester(new BenchmarkApplication(resolveAtParseTime, componentFreeRendering));
+		render();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	@Benchmark
+	public String render()
+	{
+		tester.startPage(new AutolinkedPage(tagCount));
+		return tester.getLastResponseAsString();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ResourceResolvers#getResolverForUrl(String)} with a growing number of registered scopes. The time
+ * per lookup should stay flat regardless of {@link #scopeCount}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResourceResolversBenchmark
+{
+	@Param({"1", "10", "40", "160"})
+	int scopeCount;
+
+	private ResourceResolvers resolvers;
+
+	private String lastScopeUrl;
+
+	@Setup
+	public void setUp()
+	{
+		resolvers = new ResourceResolvers();
+		resolvers.add(new ClasspathRootResolver(new ResponseCompression()));
+		for (int i = 0; i < scopeCount; i++)
+		{
+			resolvers.add(new ClasspathResolver(ResourceResolversBenchmark.class, "scope" + i, new ResponseCompression()));
+		}
+		lastScopeUrl = "scope" + (scopeCount - 1) + ":/img/icons/arrow-up.png";
+	}
+
+	@Benchmark
+	public ResourceResolver prefixedUrl()
+	{
+		return resolvers.getResolverForUrl(lastScopeUrl);
+	}
+
+	@Benchmark
+	public ResourceResolver relativeUrl()
+	{
+		return resolvers.getResolverForUrl("img/icons/arrow-up.png");
+	}
+
+	@Benchmark
+	public ResourceResolver fullUrl()
+	{
+		return resolvers.getResolverForUrl("https://example.com/img/icons/arrow-up.png");
+	}
+}
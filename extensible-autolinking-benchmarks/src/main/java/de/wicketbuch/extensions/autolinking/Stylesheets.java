@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Generates stylesheets that look like typical framework and theme CSS: many plain rules, comments, strings,
+ * <code>@font-face</code> blocks and background images, with a <code>url(...)</code> in about every tenth rule.
+ * <p>
+ * Also provides real stylesheets to compare with, both MIT licensed and unmodified, with their license headers:
+ * {@link #BOOTSTRAP} from Bootstrap 3.3.7 and {@link #FONT_AWESOME} from Font Awesome 4.7.0.
+ */
+final class Stylesheets
+{
+	/**
+	 * Roughly the size of an unminified Bootstrap 3 stylesheet.
+	 */
+	static final int BOOTSTRAP_SIZE = 150 * 1024;
+
+	/**
+	 * The unminified Bootstrap 3.3.7 stylesheet, a large framework stylesheet with few URLs.
+	 */
+	static final String BOOTSTRAP = "bootstrap-3.3.7.css";
+
+	/**
+	 * The unminified Font Awesome 4.7.0 stylesheet, a small icon font stylesheet with a <code>@font-face</code> block.
+	 */
+	static final String FONT_AWESOME = "font-awesome-4.7.0.css";
+
+	private Stylesheets()
+	{
+	}
+
+	static String generate(int approximateSize, String urlPrefix)
+	{
+		final StringBuilder css = new StringBuilder(approximateSize + 1024);
+		css.append("/*!\n * generated for benchmarking, url(not/a/link.png) in a comment\n */\n");
+		css.append("@import \"").append(urlPrefix).append("base.css\";\n");
+		int rule = 0;
+		while (css.length() < approximateSize)
+		{
+			switch (rule % 10)
+			{
+				case 0:
+					css.append(".icon-").append(rule).append(" {\n  background: url(\"").append(urlPrefix)
+							.append("img/icons/icon-").append(rule % 50).append(".png\") no-repeat 0 0;\n}\n");
+					break;
+				case 3:
+					css.append(".btn-").append(rule).append(":hover,\n.btn-").append(rule)
+							.append(":focus {\n  color: #333;\n  background-color: #e6e6e6;\n")
+							.append("  border-color: #adadad;\n}\n");
+					break;
+				case 5:
+					css.append(".glyph-").append(rule).append(":before {\n  content: \"\\e0").append(rule % 90)
+							.append("\";\n  font-family: 'Glyphicons Halflings';\n}\n");
+					break;
+				case 7:
+					css.append("/* section ").append(rule).append(" */\n");
+					css.append("@media (min-width: 768px) {\n  .col-sm-").append(rule % 12)
+							.append(" {\n    float: left;\n    width: ").append(rule % 100).append("%;\n  }\n}\n");
+					break;
+				case 9:
+					if (rule % 100 == 9)
+					{
+						css.append("@font-face {\n  font-family: 'Font").append(rule).append("';\n  src: url('")
+								.append(urlPrefix).append("fonts/font.eot');\n  src: url('").append(urlPrefix)
+								.append("fonts/font.eot?#iefix') format('embedded-opentype'), url('")
+								.append(urlPrefix).append("fonts/font.woff') format('woff');\n}\n");
+						break;
+					}
+					// fall through
+				default:
+					css.append(".rule-").append(rule).append(" > .child {\n  margin: 0 auto;\n  padding: ")
+							.append(rule % 20).append("px;\n  -webkit-transition: all .2s ease-in-out;\n")
+							.append("  transition: all .2s ease-in-out;\n}\n");
+			}
+			rule++;
+		}
+		return css.toString();
+	}
+
+	/**
+	 * @param name one of the bundled stylesheets, e.g. {@link #BOOTSTRAP}
+	 * @return its content
+	 */
+	static String load(String name)
+	{
+		final InputStream in = Stylesheets.class.getResourceAsStream("css/" + name);
+		if (in == null)
+		{
+			throw new IllegalArgumentException("no such stylesheet: " + name);
+		}
+		try
+		{
+			final Reader reader = new InputStreamReader(in, Charset.forName("UTF-8"));
+			final StringBuilder css = new StringBuilder();
+			final char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) >= 0)
+			{
+				css.append(buffer, 0, read);
+			}
+			return css.toString();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("could not read stylesheet " + name, e);
+		}
+		finally
+		{
+			try
+			{
+				in.close();
+			}
+			catch (IOException e)
+			{
+				// nothing left to read
+			}
+		}
+	}
+}
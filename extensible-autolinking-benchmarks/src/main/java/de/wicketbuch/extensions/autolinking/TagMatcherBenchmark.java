@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures looking up the tag names of a typical application page in {@link TagMatcher}, compared to a plain
+ * {@link HashMap} lookup as it was done before. Each lookup uses a new copy of the tag name, like the markup parser
+ * creates a new string for each tag, so that its hash code is not cached yet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TagMatcherBenchmark
+{
+	private static final String[] TAG_NAMES = {"html", "head", "meta", "title", "link", "script", "body", "div",
+			"header", "a", "img", "nav", "ul", "li", "span", "main", "form", "fieldset", "label", "input", "select",
+			"option", "button", "table", "thead", "tr", "th", "tbody", "td", "br", "small", "time", "strong", "footer",
+			"p", "em", "div", "span", "td", "tr", "a", "li", "div", "span", "td"};
+
+	private TagMatcher matcher;
+
+	private Map<String, String[]> map;
+
+	private char[][] tagNames;
+
+	@Setup
+	public void setUp()
+	{
+		matcher = TagMatcher.EMPTY;
+		map = new HashMap<String, String[]>();
+		final String[][] mappings = {{"link", "href"}, {"script", "src"}, {"img", "src"}, {"input", "src"},
+				{"embed", "src"}};
+		for (String[] mapping : mappings)
+		{
+			matcher = matcher.with(mapping[0], mapping[1]);
+			map.put(mapping[0], new String[]{mapping[1]});
+		}
+		tagNames = new char[TAG_NAMES.length][];
+		for (int i = 0; i < TAG_NAMES.length; i++)
+		{
+			tagNames[i] = TAG_NAMES[i].toCharArray();
+		}
+	}
+
+	@Benchmark
+	public void tagMatcher(Blackhole blackhole)
+	{
+		for (char[] tagName : tagNames)
+		{
+			blackhole.consume(matcher.getAttributes(new String(tagName)));
+		}
+	}
+
+	@Benchmark
+	public void hashMap(Blackhole blackhole)
+	{
+		for (char[] tagName : tagNames)
+		{
+			blackhole.consume(map.get(new String(tagName)));
+		}
+	}
+}
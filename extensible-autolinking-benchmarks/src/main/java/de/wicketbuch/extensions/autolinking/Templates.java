@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+/**
+ * Generates page templates for the benchmarks. {@link #page(int)} consists almost entirely of autolinked tags, mixing
+ * all kinds of URLs the autolinker has to look at: context root, classpath root, custom scope, relative and external.
+ * {@link #application(int)} looks more like a real application page, where only a few of the tags are autolinked.
+ */
+final class Templates
+{
+	private Templates()
+	{
+	}
+
+	static String page(int tagCount)
+	{
+		final StringBuilder html = new StringBuilder(200 + tagCount * 120);
+		html.append("<html xmlns:wicket=\"http://wicket.apache.org\">\n<head>\n");
+		html.append("<link rel=\"stylesheet\" href=\"ctx:/css/site.css\"/>\n");
+		html.append("<script src=\"cp:/de/wicketbuch/extensions/autolinking/site.js\"></script>\n");
+		html.append("</head>\n<body>\n<ul>\n");
+		for (int i = 0; i < tagCount; i++)
+		{
+			html.append("<li class=\"item-").append(i).append("\">");
+			switch (i % 5)
+			{
+				case 0:
+				case 1:
+					html.append("<img src=\"ctx:/img/icons/icon-").append(i % 20).append(".png\"/>");
+					break;
+				case 2:
+					html.append("<img src=\"bench:/icons/icon-").append(i % 20).append(".png\"/>");
+					break;
+				case 3:
+					html.append("<img src=\"icons/icon-").append(i % 20).append(".png\"/>");
+					break;
+				default:
+					html.append("<img src=\"https://example.com/icons/icon-").append(i % 20).append(".png\"/>");
+			}
+			html.append(" Item ").append(i).append("</li>\n");
+		}
+		html.append("</ul>\n</body>\n</html>\n");
+		return html.toString();
+	}
+
+	/**
+	 * @param rowCount number of table rows, each with about a dozen tags of which one is autolinked
+	 * @return a page with navigation, a form and a data table
+	 */
+	static String application(int rowCount)
+	{
+		final StringBuilder html = new StringBuilder(2000 + rowCount * 500);
+		html.append("<!DOCTYPE html>\n<html xmlns:wicket=\"http://wicket.apache.org\">\n<head>\n");
+		html.append("<meta charset=\"utf-8\"/>\n<title>Orders</title>\n");
+		html.append("<link rel=\"stylesheet\" href=\"ctx:/css/site.css\"/>\n");
+		html.append("<link rel=\"icon\" href=\"https://example.com/favicon.ico\"/>\n");
+		html.append("<script src=\"cp:/de/wicketbuch/extensions/autolinking/site.js\"></script>\n");
+		html.append("</head>\n<body>\n<div class=\"container\">\n<header class=\"navbar\">\n");
+		html.append("<a class=\"brand\" href=\"#\"><img src=\"ctx:/img/logo.png\" alt=\"Logo\"/></a>\n");
+		html.append("<nav><ul class=\"nav\">\n");
+		for (int i = 0; i < 8; i++)
+		{
+			html.append("<li><a href=\"#section-").append(i).append("\"><span>Section ").append(i)
+					.append("</span></a></li>\n");
+		}
+		html.append("</ul></nav>\n</header>\n<main>\n<form class=\"filter\">\n<fieldset>\n");
+		html.append("<label for=\"q\">Search</label> <input type=\"text\" id=\"q\" name=\"q\"/>\n");
+		html.append("<select name=\"status\"><option>open</option><option>closed</option></select>\n");
+		html.append("<button type=\"submit\" class=\"btn\">Filter</button>\n</fieldset>\n</form>\n");
+		html.append("<table class=\"table\">\n<thead><tr><th>Status</th><th>Order</th><th>Customer</th>");
+		html.append("<th>Date</th><th>Total</th></tr></thead>\n<tbody>\n");
+		for (int i = 0; i < rowCount; i++)
+		{
+			html.append("<tr class=\"row-").append(i % 2 == 0 ? "even" : "odd").append("\">");
+			html.append("<td><img src=\"ctx:/img/status-").append(i % 4).append(".png\"/></td>");
+			html.append("<td><a href=\"#order-").append(i).append("\">").append(10000 + i).append("</a></td>");
+			html.append("<td><span class=\"name\">Customer ").append(i % 50).append("</span>");
+			html.append("<br/><small>customer").append(i % 50).append("@example.com</small></td>");
+			html.append("<td><time>2017-0").append(1 + i % 9).append("-1").append(i % 10).append("</time></td>");
+			html.append("<td class=\"amount\"><strong>").append(i * 7 % 1000).append(".00</strong> EUR</td>");
+			html.append("</tr>\n");
+		}
+		html.append("</tbody>\n</table>\n</main>\n<footer><p><em>Example</em> &copy; 2017</p></footer>\n");
+		html.append("</div>\n</body>\n</html>\n");
+		return html.toString();
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.tester.WicketTester;
+
+/**
+ * Processes the <code>ctx:/</code> and <code>cp:/</code> stylesheets of an application at build time, so that
+ * {@link ExtensibleAutolinker} can serve them without processing them at runtime.
+ * <p>
+ * The application is started in a {@link WicketTester} and every stylesheet is requested through its regular URL,
+ * so the result is exactly what the application would produce live, as long as it runs with the same configuration.
+ * The processed stylesheets are written to {@link PrecompiledStylesheets#DIRECTORY} in the output directory, together
+ * with a manifest at {@link PrecompiledStylesheets#MANIFEST}. Both must end up on the classpath of the application.
+ * <p>
+ * This is run by the <code>precompile-css</code> goal of this plugin. It lives in the same package as
+ * {@link ExtensibleAutolinker}, because it needs access to its stylesheet processing.
+ */
+public class CssPrecompiler
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Nonnull
+	private final File webappDirectory;
+	@Nonnull
+	private final File classesDirectory;
+	@Nonnull
+	private final File outputDirectory;
+	@Nonnull
+	private RuntimeConfigurationType configurationType = RuntimeConfigurationType.DEPLOYMENT;
+
+	/**
+	 * @param webappDirectory  the context root of the application, source of <code>ctx:/</code> stylesheets
+	 * @param classesDirectory the compiled classes of the application, source of <code>cp:/</code> stylesheets
+	 * @param outputDirectory  where to write processed stylesheets and manifest, usually the same as
+	 *                         <code>classesDirectory</code>
+	 */
+	public CssPrecompiler(@Nonnull File webappDirectory, @Nonnull File classesDirectory, @Nonnull File outputDirectory)
+	{
+		this.webappDirectory = webappDirectory;
+		this.classesDirectory = classesDirectory;
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * @param configurationType the configuration to run the application in. This must be the same as in production,
+	 *                          because it determines the caching strategy and therefore the generated URLs. Defaults
+	 *                          to {@link RuntimeConfigurationType#DEPLOYMENT}.
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public CssPrecompiler setConfigurationType(@Nonnull RuntimeConfigurationType configurationType)
+	{
+		this.configurationType = configurationType;
+		return this;
+	}
+
+	/**
+	 * Start the given application, process all stylesheets and write the results.
+	 *
+	 * @param application a new, uninitialized instance of the application, whose configuration type has not been
+	 *                    set yet
+	 * @return the number of precompiled stylesheets
+	 * @throws IOException if the results cannot be written
+	 */
+	public int precompile(@Nonnull WebApplication application) throws IOException
+	{
+		application.setConfigurationType(configurationType);
+		final WicketTester tester = new WicketTester(application, webappDirectory.getAbsolutePath());
+		try
+		{
+			return precompile(tester, application);
+		}
+		finally
+		{
+			tester.destroy();
+		}
+	}
+
+	private int precompile(@Nonnull WicketTester tester, @Nonnull WebApplication application) throws IOException
+	{
+		final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(application);
+		if (autolinker == null)
+		{
+			throw new IllegalStateException("ExtensibleAutolinker is not configured in " + application.getClass());
+		}
+
+		final Map<String, String> manifest = new LinkedHashMap<String, String>();
+		final Map<String, String> stylesheets = new LinkedHashMap<String, String>();
+		autolinker.cssProcessor.getPrecompiled().setEnabled(false);
+		autolinker.cssProcessor.setListener(new CssProcessor.ProcessingListener()
+		{
+			@Override
+			public void processed(@Nonnull CssProcessor.ProcessedCssKey key, @Nonnull String output)
+			{
+				final String manifestKey = PrecompiledStylesheets.manifestKey(key);
+				final String file = PrecompiledStylesheets.DIRECTORY +
+						Digests.md5((manifestKey + key.getDigest()).getBytes(UTF8)) + ".css";
+				manifest.put(manifestKey, PrecompiledStylesheets.manifestValue(key, file));
+				stylesheets.put(file, output);
+			}
+		});
+
+		final File precompiledDirectory = new File(outputDirectory, PrecompiledStylesheets.DIRECTORY);
+		if (precompiledDirectory.isDirectory())
+		{
+			Files.removeFolder(precompiledDirectory);
+		}
+
+		final List<String> sources = new ArrayList<String>();
+		collectStylesheets(webappDirectory, "", "ctx:/", sources);
+		collectStylesheets(classesDirectory, "", "cp:/", sources);
+		for (String src : sources)
+		{
+			request(tester, autolinker, src);
+		}
+
+		for (Map.Entry<String, String> stylesheet : stylesheets.entrySet())
+		{
+			write(new File(outputDirectory, stylesheet.getKey()), stylesheet.getValue().getBytes(UTF8));
+		}
+		final Properties properties = new Properties();
+		properties.putAll(manifest);
+		final File manifestFile = new File(outputDirectory, PrecompiledStylesheets.MANIFEST);
+		manifestFile.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(manifestFile);
+		try
+		{
+			properties.store(out, "stylesheets precompiled by extensible-autolinking");
+		}
+		finally
+		{
+			out.close();
+		}
+		return stylesheets.size();
+	}
+
+	private void collectStylesheets(@Nonnull File directory, @Nonnull String path, @Nonnull String prefix,
+	                                @Nonnull List<String> sources)
+	{
+		final File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			final String filePath = path + file.getName();
+			if (file.isDirectory())
+			{
+				// neither can be served by the resolvers
+				if (!file.getName().equalsIgnoreCase("WEB-INF") && !file.getName().equalsIgnoreCase("META-INF"))
+				{
+					collectStylesheets(file, filePath + "/", prefix, sources);
+				}
+			}
+			else if (file.getName().endsWith(".css"))
+			{
+				sources.add(prefix + filePath);
+			}
+		}
+	}
+
+	/**
+	 * Request the stylesheet through its regular URL, so that it is processed with the same base URL as at runtime.
+	 */
+	private void request(@Nonnull WicketTester tester, @Nonnull ExtensibleAutolinker autolinker, @Nonnull String src)
+	{
+		final ResourceResolver resolver = autolinker.getResolvers().getResolverForUrl(src);
+		if (resolver == null)
+		{
+			return;
+		}
+		final ResourceReference reference = resolver.resolveForCss(src);
+		final Url url = tester.getRequestCycle().mapUrlFor(new ResourceReferenceRequestHandler(reference));
+		final MockHttpServletRequest request = tester.getRequest();
+		tester.executeUrl(request.getContextPath() + request.getServletPath() + "/" + url.toString());
+	}
+
+	private static void write(@Nonnull File file, @Nonnull byte[] content) throws IOException
+	{
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(content);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import de.wicketbuch.extensions.autolinking.CssPrecompiler;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.protocol.http.WebApplication;
+
+/**
+ * Processes the <code>ctx:/</code> and <code>cp:/</code> stylesheets of a Wicket application with
+ * {@link CssPrecompiler}, so that ExtensibleAutolinker can serve them at runtime without processing them again.
+ * <p>
+ * The application class is instantiated from the project's runtime classpath. Wicket and extensible-autolinking
+ * themselves are taken from the plugin's dependencies, so their versions should match those of the project.
+ */
+@Mojo(name = "precompile-css", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+		requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class PrecompileCssMojo extends AbstractMojo
+{
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	/**
+	 * Fully qualified name of the {@link WebApplication} subclass that configures ExtensibleAutolinker.
+	 */
+	@Parameter(required = true)
+	private String applicationClass;
+
+	/**
+	 * The context root of the application.
+	 */
+	@Parameter(defaultValue = "${basedir}/src/main/webapp")
+	private File webappDirectory;
+
+	/**
+	 * The compiled classes and resources of the application.
+	 */
+	@Parameter(defaultValue = "${project.build.outputDirectory}")
+	private File classesDirectory;
+
+	/**
+	 * Where processed stylesheets and manifest are written. Must end up on the classpath of the application.
+	 */
+	@Parameter(defaultValue = "${project.build.outputDirectory}")
+	private File outputDirectory;
+
+	/**
+	 * The Wicket configuration the application runs in, must be the same as in production.
+	 */
+	@Parameter(defaultValue = "DEPLOYMENT")
+	private RuntimeConfigurationType configuration;
+
+	@Parameter(property = "extensible-autolinking.skip", defaultValue = "false")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException
+	{
+		if (skip)
+		{
+			getLog().info("skipping CSS precompilation");
+			return;
+		}
+
+		final Thread thread = Thread.currentThread();
+		final ClassLoader originalClassLoader = thread.getContextClassLoader();
+		final ClassLoader projectClassLoader = newProjectClassLoader();
+		thread.setContextClassLoader(projectClassLoader);
+		try
+		{
+			final WebApplication application =
+					(WebApplication) projectClassLoader.loadClass(applicationClass).newInstance();
+			final int count = new CssPrecompiler(webappDirectory, classesDirectory, outputDirectory)
+					.setConfigurationType(configuration)
+					.precompile(application);
+			getLog().info("precompiled " + count + " stylesheets");
+		}
+		catch (ClassNotFoundException | InstantiationException | IllegalAccessException e)
+		{
+			throw new MojoExecutionException("cannot instantiate application " + applicationClass, e);
+		}
+		catch (IOException e)
+		{
+			throw new MojoExecutionException("cannot write precompiled stylesheets", e);
+		}
+		finally
+		{
+			thread.setContextClassLoader(originalClassLoader);
+		}
+	}
+
+	private ClassLoader newProjectClassLoader() throws MojoExecutionException
+	{
+		try
+		{
+			final List<String> elements = project.getRuntimeClasspathElements();
+			final URL[] urls = new URL[elements.size()];
+			for (int i = 0; i < urls.length; i++)
+			{
+				urls[i] = new File(elements.get(i)).toURI().toURL();
+			}
+			// parent first, so that the application sees the same Wicket classes as the precompiler
+			return new URLClassLoader(urls, getClass().getClassLoader());
+		}
+		catch (DependencyResolutionRequiredException | MalformedURLException e)
+		{
+			throw new MojoExecutionException("cannot resolve the runtime classpath of " + project.getId(), e);
+		}
+	}
+}
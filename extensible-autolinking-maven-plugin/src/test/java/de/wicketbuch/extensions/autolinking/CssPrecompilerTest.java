@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CssPrecompilerTest
+{
+	private static final String LISTED = "ctx:/css/listed.css";
+
+	private static final String UNLISTED = "cp:/de/wicketbuch/extensions/autolinking/unlisted.css";
+
+	private static final File WEBAPP = new File("src/test/webapp");
+
+	@ClassRule
+	public static final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Stylesheets processed live by the application serving the precompiled ones.
+	 */
+	private static final AtomicInteger processedLive = new AtomicInteger();
+
+	@Nullable
+	private static File output;
+
+	private static int precompiledCount;
+
+	@Nullable
+	private static WicketTester tester;
+
+	@Test
+	public void manifestListsProcessedStylesheets() throws IOException
+	{
+		assertThat(precompiledCount, is(1));
+		final Properties manifest = loadManifest();
+		assertThat(manifest.stringPropertyNames(), is(Collections.singleton("|" + LISTED)));
+
+		final String[] entry = manifest.getProperty("|" + LISTED).split("\\|", 4);
+		final byte[] source = Files.readAllBytes(new File(WEBAPP, "css/listed.css").toPath());
+		assertThat(entry[0], is(Digests.md5(source)));
+		assertThat(entry[2], startsWith(PrecompiledStylesheets.DIRECTORY));
+		final String processed = read(new File(output, entry[2]));
+		assertThat(processed, containsString(".listed"));
+		assertThat(processed, not(containsString("ctx:/")));
+	}
+
+	@Test
+	public void listedStylesheetIsServedWithoutProcessing() throws IOException
+	{
+		processedLive.set(0);
+		final String served = request(LISTED);
+		final String file = loadManifest().getProperty("|" + LISTED).split("\\|", 4)[2];
+		assertThat(served, is(read(new File(output, file))));
+		assertThat(processedLive.get(), is(0));
+	}
+
+	@Test
+	public void unlistedStylesheetIsProcessedLive()
+	{
+		processedLive.set(0);
+		final String served = request(UNLISTED);
+		assertThat(served, containsString(".unlisted"));
+		assertThat(served, not(containsString("ctx:/")));
+		assertThat(processedLive.get(), is(1));
+	}
+
+	@Nonnull
+	private static String request(@Nonnull String src)
+	{
+		final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(tester.getApplication());
+		final ResourceReference reference = autolinker.getResolvers().getResolverForUrl(src).resolveForCss(src);
+		final Url url = tester.getRequestCycle().mapUrlFor(new ResourceReferenceRequestHandler(reference));
+		final MockHttpServletRequest request = tester.getRequest();
+		tester.executeUrl(request.getContextPath() + request.getServletPath() + "/" + url.toString());
+		return tester.getLastResponseAsString();
+	}
+
+	@Nonnull
+	private static Properties loadManifest() throws IOException
+	{
+		final Properties manifest = new Properties();
+		final InputStream in = new FileInputStream(new File(output, PrecompiledStylesheets.MANIFEST));
+		try
+		{
+			manifest.load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+		return manifest;
+	}
+
+	@Nonnull
+	private static String read(@Nonnull File file) throws IOException
+	{
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	@BeforeClass
+	public static void precompile() throws IOException
+	{
+		output = folder.newFolder("classes");
+		precompiledCount = new CssPrecompiler(WEBAPP, folder.newFolder("empty"), output)
+				.precompile(new PrecompilerTestApplication());
+
+		// serve from an application that has the output on its classpath, like the packaged application would
+		final URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()},
+				CssPrecompilerTest.class.getClassLoader());
+		final PrecompilerTestApplication application = new PrecompilerTestApplication()
+		{
+			@Override
+			protected void init()
+			{
+				getApplicationSettings().setClassResolver(new IClassResolver()
+				{
+					@Override
+					public Class<?> resolveClass(String classname) throws ClassNotFoundException
+					{
+						return classLoader.loadClass(classname);
+					}
+
+					@Override
+					public ClassLoader getClassLoader()
+					{
+						return classLoader;
+					}
+
+					@Override
+					public Iterator<URL> getResources(String name)
+					{
+						try
+						{
+							return Collections.list(classLoader.getResources(name)).iterator();
+						}
+						catch (IOException e)
+						{
+							throw new WicketRuntimeException(e);
+						}
+					}
+				});
+				super.init();
+				ExtensibleAutolinker.get(this).setMetrics(new AutolinkerMetrics()
+				{
+					@Override
+					public void resolved(@Nonnull String prefix, long nanos)
+					{
+					}
+
+					@Override
+					public void cssProcessed(long nanos, int inputLength, int outputLength)
+					{
+						processedLive.incrementAndGet();
+					}
+
+					@Override
+					public void packageResourceMissing(@Nonnull Class<?> scope, @Nonnull String path)
+					{
+					}
+				});
+			}
+		};
+		application.setConfigurationType(RuntimeConfigurationType.DEPLOYMENT);
+		tester = new WicketTester(application, WEBAPP.getAbsolutePath());
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
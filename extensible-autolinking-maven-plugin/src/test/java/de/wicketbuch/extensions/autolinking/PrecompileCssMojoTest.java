@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import de.wicketbuch.extensions.autolinking.maven.PrecompileCssMojo;
+import org.apache.maven.project.MavenProject;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrecompileCssMojoTest
+{
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void mojoWritesManifest() throws Exception
+	{
+		final File output = folder.newFolder("classes");
+		final PrecompileCssMojo mojo = new PrecompileCssMojo();
+		set(mojo, "project", new MavenProject()
+		{
+			@Override
+			public List<String> getRuntimeClasspathElements()
+			{
+				// the application is on the classpath of the test already
+				return Collections.emptyList();
+			}
+		});
+		set(mojo, "applicationClass", PrecompilerTestApplication.class.getName());
+		set(mojo, "webappDirectory", new File("src/test/webapp"));
+		set(mojo, "classesDirectory", folder.newFolder("empty"));
+		set(mojo, "outputDirectory", output);
+		set(mojo, "configuration", RuntimeConfigurationType.DEPLOYMENT);
+
+		mojo.execute();
+
+		assertThat(new File(output, PrecompiledStylesheets.MANIFEST).isFile(), is(true));
+	}
+
+	private static void set(@Nonnull Object mojo, @Nonnull String name, @Nonnull Object value) throws Exception
+	{
+		final Field field = mojo.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(mojo, value);
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import org.apache.wicket.mock.MockApplication;
+
+/**
+ * Application that is precompiled in the tests, instantiated by name by {@link PrecompileCssMojoTest}.
+ */
+public class PrecompilerTestApplication extends MockApplication
+{
+	@Override
+	protected void init()
+	{
+		super.init();
+		ExtensibleAutolinker.configure(this);
+	}
+}
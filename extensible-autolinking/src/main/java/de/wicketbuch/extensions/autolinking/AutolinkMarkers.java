@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.response.filter.IResponseFilter;
+import org.apache.wicket.util.string.AppendingStringBuffer;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * Registry of the autolinked attributes that are rendered without a component, see
+ * {@link ExtensibleAutolinker#setComponentFreeRendering(boolean)}. While markup is parsed, the value of such an
+ * attribute is replaced by a marker, which is written out as static markup. As a response filter, this then replaces
+ * the markers in every rendered page with the URLs of the current request.
+ * <p>
+ * A marker is {@link ExtensibleAutolinker#EXTENSIBLE_AUTOLINK_PREFIX}, followed by the index of the attribute's value
+ * in this registry and a colon. Like a prefixed URL, it contains a colon, so Wicket neither prepends a relative path to
+ * it nor links it automatically. Identical values share an index, so the registry only grows with the number of
+ * distinct autolinked paths in the application's markup.
+ */
+class AutolinkMarkers implements IResponseFilter
+{
+	private static final String PREFIX = ExtensibleAutolinker.EXTENSIBLE_AUTOLINK_PREFIX;
+
+	private static final char END = ':';
+
+	/**
+	 * An autolinked value, together with how the tag containing it is to be resolved.
+	 */
+	static final class Entry
+	{
+		@Nonnull
+		final String src;
+
+		final boolean stylesheet;
+
+		final boolean image;
+
+		Entry(@Nonnull String src, boolean stylesheet, boolean image)
+		{
+			this.src = src;
+			this.stylesheet = stylesheet;
+			this.image = image;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof Entry))
+			{
+				return false;
+			}
+			final Entry entry = (Entry) o;
+			return stylesheet == entry.stylesheet && image == entry.image && src.equals(entry.src);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * (31 * src.hashCode() + (stylesheet ? 1 : 0)) + (image ? 1 : 0);
+		}
+	}
+
+	@Nonnull
+	private final ExtensibleAutolinker autolinker;
+
+	/**
+	 * Guarded by <code>this</code>.
+	 */
+	@Nonnull
+	private final Map<Entry, Integer> indices = new HashMap<Entry, Integer>();
+
+	/**
+	 * Replaced by a longer copy when an entry is added, so that rendering can read it without locking.
+	 */
+	@Nonnull
+	private volatile Entry[] entries = new Entry[0];
+
+	AutolinkMarkers(@Nonnull ExtensibleAutolinker autolinker)
+	{
+		this.autolinker = autolinker;
+	}
+
+	/**
+	 * @param src        an autolinked value
+	 * @param stylesheet whether the tag links a stylesheet
+	 * @param image      whether the tag is an image
+	 * @return the marker to write into the markup instead of the value.
+	 */
+	@Nonnull
+	synchronized String marker(@Nonnull String src, boolean stylesheet, boolean image)
+	{
+		final Entry entry = new Entry(src, stylesheet, image);
+		Integer index = indices.get(entry);
+		if (index == null)
+		{
+			final Entry[] current = entries;
+			final Entry[] extended = new Entry[current.length + 1];
+			System.arraycopy(current, 0, extended, 0, current.length);
+			index = current.length;
+			extended[index] = entry;
+			entries = extended;
+			indices.put(entry, index);
+		}
+		return PREFIX + index + END;
+	}
+
+	/**
+	 * @return the entry with the given index, or <code>null</code> if there is none.
+	 */
+	@Nullable
+	Entry get(int index)
+	{
+		final Entry[] current = entries;
+		return index >= 0 && index < current.length ? current[index] : null;
+	}
+
+	@Override
+	public AppendingStringBuffer filter(AppendingStringBuffer responseBuffer)
+	{
+		if (entries.length == 0)
+		{
+			return responseBuffer;
+		}
+		int start = responseBuffer.indexOf(PREFIX, 0);
+		final RequestCycle requestCycle = RequestCycle.get();
+		if (start < 0 || requestCycle == null)
+		{
+			return responseBuffer;
+		}
+
+		final char[] chars = responseBuffer.getValue();
+		final int length = responseBuffer.length();
+		final AppendingStringBuffer filtered = new AppendingStringBuffer(length + length / 8);
+		int copied = 0;
+		while (start >= 0)
+		{
+			int end = start + PREFIX.length();
+			int index = 0;
+			// more digits than an int holds are not a marker
+			while (end < length && chars[end] >= '0' && chars[end] <= '9' && end - start < PREFIX.length() + 9)
+			{
+				index = index * 10 + chars[end] - '0';
+				end++;
+			}
+			final Entry entry = end > start + PREFIX.length() && end < length && chars[end] == END ? get(index) : null;
+			if (entry != null)
+			{
+				filtered.append(chars, copied, start - copied);
+				filtered.append(Strings.escapeMarkup(autolinker.render(requestCycle, entry)).toString());
+				copied = end + 1;
+			}
+			start = responseBuffer.indexOf(PREFIX, end);
+		}
+		filtered.append(chars, copied, length - copied);
+		return filtered;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives measurements from {@link ExtensibleAutolinker}. Install an implementation via
+ * {@link ExtensibleAutolinker#setMetrics(AutolinkerMetrics)}, e.g. {@link JmxAutolinkerMetrics}. Implementations are
+ * called on the request threads, possibly concurrently, and must be cheap and thread-safe.
+ * <p>
+ * Cache hit ratios are not reported through this interface, they are available at any time from the
+ * {@link CacheStatistics} of the autolinker.
+ */
+public interface AutolinkerMetrics
+{
+	/**
+	 * Does nothing. This is the default, and while it is installed the autolinker does not take any measurements.
+	 */
+	AutolinkerMetrics NO_OP = new AutolinkerMetrics()
+	{
+		@Override
+		public void resolved(@Nonnull String prefix, long nanos)
+		{
+		}
+
+		@Override
+		public void cssProcessed(long nanos, int inputLength, int outputLength)
+		{
+		}
+
+		@Override
+		public void packageResourceMissing(@Nonnull Class<?> scope, @Nonnull String path)
+		{
+		}
+	};
+
+	/**
+	 * A prefixed URL has been resolved to a resource reference, either in markup or in a stylesheet.
+	 *
+	 * @param prefix the prefix of the resolver, e.g. <code>ctx:/</code>
+	 * @param nanos  the time it took to resolve the URL
+	 */
+	void resolved(@Nonnull String prefix, long nanos);
+
+	/**
+	 * A stylesheet has been processed. Stylesheets served from a cache or precompiled at build time are not reported.
+	 *
+	 * @param nanos        the time it took to process the stylesheet
+	 * @param inputLength  the length of the stylesheet in characters
+	 * @param outputLength the length of the processed stylesheet in characters
+	 */
+	void cssProcessed(long nanos, int inputLength, int outputLength);
+
+	/**
+	 * An autolink without prefix did not refer to an existing package resource and is left as it is.
+	 *
+	 * @param scope the class the path is relative to
+	 * @param path  the path
+	 */
+	void packageResourceMissing(@Nonnull Class<?> scope, @Nonnull String path);
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link JmxAutolinkerMetrics}. Times are in nanoseconds.
+ */
+public interface AutolinkerMetricsMXBean
+{
+	long getResolutions();
+
+	Map<String, Long> getResolutionsByPrefix();
+
+	long getAverageResolutionNanos();
+
+	long getCssProcessed();
+
+	long getAverageCssProcessingNanos();
+
+	long getCssCharactersIn();
+
+	long getCssCharactersOut();
+
+	long getPackageResourceMisses();
+
+	double getCssCacheHitRatio();
+
+	double getContextCssCacheHitRatio();
+
+	double getPackageResourceCacheHitRatio();
+
+	double getEmbeddedImageCacheHitRatio();
+
+	/**
+	 * Set all counters to 0. Cache statistics are not affected.
+	 */
+	void reset();
+}
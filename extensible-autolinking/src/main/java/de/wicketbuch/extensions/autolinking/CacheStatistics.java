@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of the counters of one of the caches used by {@link ExtensibleAutolinker}, for example
+ * {@link ExtensibleAutolinker#getCssCacheStatistics()}. Use it to size the caches: many evictions together with a low
+ * hit ratio mean the cache is too small.
+ */
+public final class CacheStatistics implements Serializable
+{
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+	private final int maxSize;
+
+	CacheStatistics(long hits, long misses, long evictions, int size, int maxSize)
+	{
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return number of lookups that were answered from the cache
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return number of lookups that had to be computed
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return number of entries that were dropped to make room for new ones
+	 */
+	public long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return current number of entries
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return maximum number of entries, 0 if the cache is disabled. For caches bounded by the total length of their
+	 * entries, this is that length instead.
+	 */
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return hits divided by all lookups, or 0 if there were no lookups yet
+	 */
+	public double getHitRatio()
+	{
+		final long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CacheStatistics{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size +
+				", maxSize=" + maxSize + '}';
+	}
+}
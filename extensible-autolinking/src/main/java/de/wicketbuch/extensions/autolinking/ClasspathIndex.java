@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.core.util.resource.UrlResourceStream;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory index of all resources below some packages, built once at startup. With hundreds of jars on the
+ * classpath, every class loader lookup has to ask each of them, and Wicket looks up several locale and style variants
+ * of a resource before it settles on one. Once installed, the index answers these lookups for the indexed packages
+ * from memory, including the size and modification time of a resource. A resource that does not exist costs a single
+ * map lookup.
+ * <p>
+ * Install it in your {@link Application#init()} method, after any custom resource stream locator has been set:
+ * <pre>ClasspathIndex.install(this, "com/example/web");</pre>
+ * Resources added to the indexed packages later, e.g. by hot deployment, are not found. The index is therefore only
+ * installed in deployment mode.
+ * <p>
+ * The index walks the whole class path of the application's class loader, including the jars listed in manifests,
+ * so that it also finds resources in jars without directory entries. If the class path cannot be read completely,
+ * e.g. with a custom class loader or in some application servers' virtual file systems, nothing is indexed and all
+ * lookups are left to the class loader.
+ */
+public class ClasspathIndex
+{
+	private static final Logger log = LoggerFactory.getLogger(ClasspathIndex.class);
+
+	/**
+	 * Indexed packages, each ending with a slash.
+	 */
+	@Nonnull
+	private final List<String> roots;
+
+	@Nonnull
+	private final Map<String, Entry> entries;
+
+	private ClasspathIndex(@Nonnull List<String> roots, @Nonnull Map<String, Entry> entries)
+	{
+		this.roots = roots;
+		this.entries = entries;
+	}
+
+	/**
+	 * Index the given packages and have the application's resource stream locator use the index for them. Does nothing
+	 * in development mode.
+	 *
+	 * @param application the application
+	 * @param roots       packages to index, as paths like <code>com/example/web</code>
+	 * @return the index, or <code>null</code> in development mode
+	 * @throws WicketRuntimeException if the class path cannot be read
+	 */
+	@Nullable
+	public static ClasspathIndex install(@Nonnull Application application, @Nonnull String... roots)
+	{
+		if (application.usesDevelopmentConfig())
+		{
+			return null;
+		}
+		final long start = System.currentTimeMillis();
+		final ClasspathIndex index =
+				build(application.getApplicationSettings().getClassResolver().getClassLoader(), roots);
+		application.getResourceSettings().setResourceStreamLocator(new IndexedResourceStreamLocator(index,
+				application.getResourceSettings().getResourceStreamLocator()));
+		log.info("Indexed {} resources in {} packages in {} ms", index.getSize(), index.roots.size(),
+				System.currentTimeMillis() - start);
+		return index;
+	}
+
+	@Nonnull
+	static ClasspathIndex build(@Nonnull ClassLoader classLoader, @Nonnull String... roots)
+	{
+		final List<String> normalizedRoots = new ArrayList<String>();
+		for (String root : roots)
+		{
+			normalizedRoots.add(normalize(root));
+		}
+		final Map<String, Entry> entries = new HashMap<String, Entry>();
+		try
+		{
+			if (!index(classLoader, normalizedRoots, entries))
+			{
+				return new ClasspathIndex(Collections.<String>emptyList(), Collections.<String, Entry>emptyMap());
+			}
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException("could not index class path below " + normalizedRoots, e);
+		}
+		return new ClasspathIndex(Collections.unmodifiableList(normalizedRoots), entries);
+	}
+
+	@Nonnull
+	private static String normalize(@Nonnull String root)
+	{
+		String normalized = root.replace('\\', '/');
+		while (normalized.startsWith("/"))
+		{
+			normalized = normalized.substring(1);
+		}
+		if (normalized.isEmpty())
+		{
+			throw new IllegalArgumentException("the class path root cannot be indexed, use a package");
+		}
+		return normalized.endsWith("/") ? normalized : normalized + "/";
+	}
+
+	/**
+	 * Add all resources below the roots to the entries, going through the class path in the same order as the class
+	 * loader. The first one found for a path wins, like with the class loader.
+	 *
+	 * @return whether the whole class path could be indexed. Otherwise the index cannot know that a resource does not
+	 * exist.
+	 */
+	private static boolean index(@Nonnull ClassLoader classLoader, @Nonnull List<String> roots,
+	                             @Nonnull Map<String, Entry> entries) throws IOException
+	{
+		final List<URL> classpath = classpathOf(classLoader);
+		if (classpath == null)
+		{
+			log.warn("Cannot read the class path of {}, leaving {} to the class loader", classLoader, roots);
+			return false;
+		}
+		final Deque<URL> pending = new ArrayDeque<URL>(classpath);
+		final Set<File> visited = new HashSet<File>();
+		while (!pending.isEmpty())
+		{
+			final URL location = pending.removeFirst();
+			if (!"file".equals(location.getProtocol()))
+			{
+				log.warn("Cannot index {}, leaving {} to the class loader", location, roots);
+				return false;
+			}
+			final File file;
+			try
+			{
+				file = new File(location.toURI()).getCanonicalFile();
+			}
+			catch (URISyntaxException e)
+			{
+				throw new IOException("invalid location " + location, e);
+			}
+			if (!visited.add(file))
+			{
+				continue;
+			}
+			if (file.isDirectory())
+			{
+				for (String root : roots)
+				{
+					indexDirectory(new File(file, root), root, entries);
+				}
+			}
+			else if (file.isFile())
+			{
+				final List<URL> manifestClasspath = indexJar(file, roots, entries);
+				// the class loader looks at the jars a jar refers to right after that jar
+				for (int i = manifestClasspath.size() - 1; i >= 0; i--)
+				{
+					pending.addFirst(manifestClasspath.get(i));
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the class path of the class loader and its parents, in lookup order, or <code>null</code> if it cannot
+	 * be read. The bootstrap class path is left out, it does not contain application packages.
+	 */
+	@Nullable
+	private static List<URL> classpathOf(@Nonnull ClassLoader classLoader) throws IOException
+	{
+		final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+		final List<URL> classpath = new ArrayList<URL>();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent())
+		{
+			final List<URL> urls = new ArrayList<URL>();
+			if (loader instanceof URLClassLoader)
+			{
+				Collections.addAll(urls, ((URLClassLoader) loader).getURLs());
+			}
+			else if (loader == systemClassLoader)
+			{
+				for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator))
+				{
+					if (!path.isEmpty())
+					{
+						urls.add(new File(path).toURI().toURL());
+					}
+				}
+			}
+			else if (loader != systemClassLoader.getParent())
+			{
+				// the parent of the system class loader only loads platform classes
+				return null;
+			}
+			classpath.addAll(0, urls);
+		}
+		return classpath;
+	}
+
+	private static void indexDirectory(@Nonnull File directory, @Nonnull String path,
+	                                   @Nonnull Map<String, Entry> entries) throws IOException
+	{
+		final File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			if (file.isDirectory())
+			{
+				indexDirectory(file, path + file.getName() + "/", entries);
+			}
+			else if (!entries.containsKey(path + file.getName()))
+			{
+				entries.put(path + file.getName(), new Entry(file.toURI().toURL(), file.length(), file.lastModified()));
+			}
+		}
+	}
+
+	/**
+	 * @return the class path given in the jar's manifest, resolved against the jar.
+	 */
+	@Nonnull
+	private static List<URL> indexJar(@Nonnull File file, @Nonnull List<String> roots,
+	                                  @Nonnull Map<String, Entry> entries) throws IOException
+	{
+		final URL jarFileUrl = file.toURI().toURL();
+		final List<URL> manifestClasspath = new ArrayList<URL>();
+		final JarFile jar = new JarFile(file);
+		try
+		{
+			final String jarUrl = "jar:" + jarFileUrl.toExternalForm() + "!/";
+			final Enumeration<JarEntry> jarEntries = jar.entries();
+			while (jarEntries.hasMoreElements())
+			{
+				final JarEntry entry = jarEntries.nextElement();
+				final String name = entry.getName();
+				if (!entry.isDirectory() && !entries.containsKey(name) && startsWithAny(name, roots))
+				{
+					entries.put(name, new Entry(new URL(jarUrl + name), entry.getSize(), entry.getTime()));
+				}
+			}
+			final Manifest manifest = jar.getManifest();
+			final String classpath =
+					manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+			if (classpath != null)
+			{
+				for (String path : classpath.trim().split("\\s+"))
+				{
+					if (!path.isEmpty())
+					{
+						manifestClasspath.add(new URL(jarFileUrl, path));
+					}
+				}
+			}
+		}
+		finally
+		{
+			jar.close();
+		}
+		return manifestClasspath;
+	}
+
+	private static boolean startsWithAny(@Nonnull String path, @Nonnull List<String> roots)
+	{
+		for (String root : roots)
+		{
+			if (path.startsWith(root))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param path a path in the class path, without leading slash
+	 * @return whether the path is in one of the indexed packages, so that the index knows whether it exists.
+	 */
+	boolean covers(@Nonnull String path)
+	{
+		return startsWithAny(path, roots);
+	}
+
+	/**
+	 * @param path a path in one of the indexed packages, without leading slash
+	 * @return a stream for the resource, or <code>null</code> if it does not exist.
+	 */
+	@Nullable
+	UrlResourceStream get(@Nonnull String path)
+	{
+		final Entry entry = entries.get(path);
+		return entry != null ? new IndexedResourceStream(entry) : null;
+	}
+
+	/**
+	 * @return the number of indexed resources.
+	 */
+	public int getSize()
+	{
+		return entries.size();
+	}
+
+	private static final class Entry
+	{
+		@Nonnull
+		private final URL url;
+
+		private final long size;
+
+		private final long lastModified;
+
+		Entry(@Nonnull URL url, long size, long lastModified)
+		{
+			this.url = url;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * Answers size and modification time from the index, without opening a connection.
+	 */
+	private static final class IndexedResourceStream extends UrlResourceStream
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final long size;
+
+		private final long lastModified;
+
+		IndexedResourceStream(@Nonnull Entry entry)
+		{
+			super(entry.url);
+			this.size = entry.size;
+			this.lastModified = entry.lastModified;
+		}
+
+		@Nullable
+		@Override
+		public Bytes length()
+		{
+			return size >= 0 ? Bytes.bytes(size) : super.length();
+		}
+
+		@Nullable
+		@Override
+		public Time lastModifiedTime()
+		{
+			return lastModified > 0 ? Time.millis(lastModified) : super.lastModifiedTime();
+		}
+	}
+}
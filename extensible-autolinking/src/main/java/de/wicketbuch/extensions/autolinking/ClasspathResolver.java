@@ -18,7 +18,6 @@ package de.wicketbuch.extensions.autolinking;
 
 import javax.annotation.Nonnull;
 
-import org.apache.wicket.request.resource.CssResourceReference;
 import org.apache.wicket.request.resource.PackageResourceReference;
 import org.apache.wicket.request.resource.ResourceReference;
 
@@ -29,23 +28,27 @@ class ClasspathResolver extends ResourceResolver
 {
 	private final Class<?> scope;
 
-	ClasspathResolver(Class<?> scope, @Nonnull String prefix)
+	@Nonnull
+	private final ResponseCompression compression;
+
+	ClasspathResolver(Class<?> scope, @Nonnull String prefix, @Nonnull ResponseCompression compression)
 	{
 		super(prefix);
 		this.scope = scope;
+		this.compression = compression;
 	}
 
 	@Nonnull
 	@Override
-	public ResourceReference resolve(@Nonnull String src)
+	protected ResourceReference newReference(@Nonnull String src)
 	{
 		return new PackageResourceReference(scope, removePrefix(src));
 	}
 
 	@Nonnull
 	@Override
-	public ResourceReference resolveForCss(@Nonnull String src)
+	protected ResourceReference newCssReference(@Nonnull String src)
 	{
-		return new CssResourceReference(scope, removePrefix(src));
+		return new CompressibleCssResourceReference(scope, removePrefix(src), compression);
 	}
 }
@@ -18,7 +18,6 @@ package de.wicketbuch.extensions.autolinking;
 
 import javax.annotation.Nonnull;
 
-import org.apache.wicket.request.resource.CssResourceReference;
 import org.apache.wicket.request.resource.PackageResourceReference;
 import org.apache.wicket.request.resource.ResourceReference;
 
@@ -27,23 +26,26 @@ import org.apache.wicket.request.resource.ResourceReference;
  */
 class ClasspathRootResolver extends ResourceResolver
 {
+	@Nonnull
+	private final ResponseCompression compression;
 
-	ClasspathRootResolver()
+	ClasspathRootResolver(@Nonnull ResponseCompression compression)
 	{
 		super("cp:/");
+		this.compression = compression;
 	}
 
 	@Nonnull
 	@Override
-	public ResourceReference resolve(@Nonnull String src)
+	protected ResourceReference newReference(@Nonnull String src)
 	{
 		return new PackageResourceReference(_cp._.class, "../" + removePrefix(src));
 	}
 
 	@Nonnull
 	@Override
-	public ResourceReference resolveForCss(@Nonnull String src)
+	protected ResourceReference newCssReference(@Nonnull String src)
 	{
-		return new CssResourceReference(_cp._.class, "../" + removePrefix(src));
+		return new CompressibleCssResourceReference(_cp._.class, "../" + removePrefix(src), compression);
 	}
 }
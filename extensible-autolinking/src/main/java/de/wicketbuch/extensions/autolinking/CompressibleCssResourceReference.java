@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.CssPackageResource;
+import org.apache.wicket.request.resource.CssResourceReference;
+
+/**
+ * {@link CssResourceReference} whose processed stylesheet is sent gzipped to clients accepting that, if enabled in
+ * the {@link ResponseCompression}. The compressed bytes are cached, so each version of a stylesheet is only
+ * compressed once.
+ */
+class CompressibleCssResourceReference extends CssResourceReference
+{
+	@Nonnull
+	private final ResponseCompression compression;
+
+	CompressibleCssResourceReference(@Nonnull Class<?> scope, @Nonnull String name,
+			@Nonnull ResponseCompression compression)
+	{
+		super(scope, name);
+		this.compression = compression;
+	}
+
+	@Override
+	public CssPackageResource getResource()
+	{
+		final CssPackageResource resource = new CompressibleCssPackageResource(getScope(), getName(), getLocale(),
+				getStyle(), getVariation(), compression);
+		// take over what Wicket decides for its own resource, e.g. not to compress stylesheets that are minified
+		resource.setCompress(super.getResource().getCompress());
+		return resource;
+	}
+
+	private static class CompressibleCssPackageResource extends CssPackageResource
+	{
+		@Nonnull
+		private final ResponseCompression compression;
+
+		CompressibleCssPackageResource(Class<?> scope, String name, Locale locale, String style, String variation,
+				@Nonnull ResponseCompression compression)
+		{
+			super(scope, name, locale, style, variation);
+			this.compression = compression;
+		}
+
+		@Override
+		protected byte[] processResponse(Attributes attributes, byte[] bytes)
+		{
+			final byte[] processed = super.processResponse(attributes, bytes);
+			if (!compression.isGzipCss())
+			{
+				return processed;
+			}
+			final Response response = attributes.getResponse();
+			ResponseCompression.addVary(response);
+			if (!(response instanceof WebResponse) ||
+					!ResponseCompression.accepts(attributes.getRequest(), ResponseCompression.GZIP))
+			{
+				return processed;
+			}
+			((WebResponse) response).setHeader("Content-Encoding", ResponseCompression.GZIP);
+			return compression.gzipCached(processed);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.core.util.resource.WebExternalResourceStream;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Serves a stylesheet from the context root after running it through the {@link CssProcessor}. The processed bytes are
+ * cached per path until the file's last modification time changes, and the response carries Content-Length,
+ * Last-Modified and a strong ETag so that clients can revalidate cheaply.
+ * <p>
+ * Files larger than the streaming threshold are neither read into memory nor cached, but processed in chunks while
+ * they are written to the response.
+ * <p>
+ * If gzipping stylesheets is enabled, the processed bytes are compressed once, kept with the cached stylesheet and sent
+ * to all clients that accept gzip, with an ETag of their own.
+ */
+class ContextCssResource extends AbstractResource
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Nonnull
+	private final String src;
+	@Nonnull
+	private final String path;
+	@Nonnull
+	private final CssProcessor cssProcessor;
+	@Nonnull
+	private final LruCache<String, ProcessedStylesheet> cache;
+
+	private final long streamingThreshold;
+
+	@Nonnull
+	private final ResponseCompression compression;
+
+	/**
+	 * @param src                the full path including the prefix, used as name for the {@link CssProcessor}
+	 * @param path               the path relative to the context root
+	 * @param cssProcessor       processor
+	 * @param cache              cache for processed stylesheets, shared by all context stylesheets
+	 * @param streamingThreshold files larger than this many bytes are streamed instead of cached
+	 * @param compression        whether to gzip the processed stylesheet
+	 */
+	ContextCssResource(@Nonnull String src, @Nonnull String path, @Nonnull CssProcessor cssProcessor,
+	                   @Nonnull LruCache<String, ProcessedStylesheet> cache, long streamingThreshold,
+	                   @Nonnull ResponseCompression compression)
+	{
+		this.src = src;
+		this.path = path.startsWith("/") ? path : "/" + path;
+		this.cssProcessor = cssProcessor;
+		this.cache = cache;
+		this.streamingThreshold = streamingThreshold;
+		this.compression = compression;
+	}
+
+	@Override
+	protected ResourceResponse newResourceResponse(Attributes attributes)
+	{
+		final ResourceResponse rr = new ResourceResponse();
+		final WebExternalResourceStream stream = new WebExternalResourceStream(path);
+		final Time lastModified = stream.lastModifiedTime();
+		rr.setLastModified(lastModified);
+		if (!rr.dataNeedsToBeWritten(attributes))
+		{
+			return rr;
+		}
+
+		final Bytes length = stream.length();
+		if (length != null && length.bytes() > streamingThreshold && cssProcessor.canStream())
+		{
+			return newStreamingResponse(rr, stream);
+		}
+
+		final ProcessedStylesheet stylesheet = getProcessedStylesheet(stream, lastModified);
+		if (stylesheet == null)
+		{
+			rr.setError(HttpServletResponse.SC_NOT_FOUND);
+			return rr;
+		}
+		rr.setContentType("text/css");
+		rr.setTextEncoding(UTF8.name());
+		final boolean gzip;
+		if (compression.isGzipCss())
+		{
+			rr.getHeaders().addHeader("Vary", "Accept-Encoding");
+			gzip = ResponseCompression.accepts(attributes.getRequest(), ResponseCompression.GZIP);
+		}
+		else
+		{
+			gzip = false;
+		}
+		final String etag = gzip ? stylesheet.gzipEtag : stylesheet.etag;
+		rr.getHeaders().addHeader("ETag", etag);
+		if (matchesIfNoneMatch(attributes.getRequest(), etag))
+		{
+			rr.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+			rr.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(Attributes attributes)
+				{
+					// nothing to write for 304 Not Modified
+				}
+			});
+			return rr;
+		}
+		final byte[] bytes;
+		if (gzip)
+		{
+			bytes = stylesheet.getGzipped();
+			rr.getHeaders().addHeader("Content-Encoding", ResponseCompression.GZIP);
+		}
+		else
+		{
+			bytes = stylesheet.bytes;
+		}
+		rr.setContentLength(bytes.length);
+		rr.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(Attributes attributes)
+			{
+				attributes.getResponse().write(bytes);
+			}
+		});
+		return rr;
+	}
+
+	/**
+	 * Process the stylesheet while writing it to the response. The length of the output is not known in advance, so the
+	 * response has neither Content-Length nor ETag, only Last-Modified.
+	 */
+	@Nonnull
+	private ResourceResponse newStreamingResponse(@Nonnull ResourceResponse rr,
+	                                              @Nonnull final WebExternalResourceStream stream)
+	{
+		rr.setContentType("text/css");
+		rr.setTextEncoding(UTF8.name());
+		rr.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(Attributes attributes) throws IOException
+			{
+				final InputStream in;
+				try
+				{
+					in = stream.getInputStream();
+				}
+				catch (ResourceStreamNotFoundException e)
+				{
+					throw new WicketRuntimeException("stylesheet has disappeared: " + path, e);
+				}
+				try
+				{
+					final Writer writer = new OutputStreamWriter(attributes.getResponse().getOutputStream(), UTF8);
+					cssProcessor.process(new InputStreamReader(in, UTF8), writer, null, src);
+				}
+				finally
+				{
+					IOUtils.closeQuietly(in);
+				}
+			}
+		});
+		return rr;
+	}
+
+	/**
+	 * @return the processed stylesheet, from the cache if the file has not been modified since, or <code>null</code>
+	 * if there is no such file.
+	 */
+	@Nullable
+	private ProcessedStylesheet getProcessedStylesheet(@Nonnull WebExternalResourceStream stream,
+	                                                   @Nullable Time lastModified)
+	{
+		final ProcessedStylesheet cached = cache.get(path);
+		if (cached != null && lastModified != null && lastModified.equals(cached.lastModified))
+		{
+			return cached;
+		}
+		final byte[] bytes = read(stream);
+		if (bytes == null)
+		{
+			return null;
+		}
+		final String css = new String(bytes, UTF8);
+		final ProcessedStylesheet processed =
+				new ProcessedStylesheet(cssProcessor.process(css, null, src).getBytes(UTF8), lastModified);
+		cache.put(path, processed);
+		return processed;
+	}
+
+	@Nullable
+	private byte[] read(@Nonnull WebExternalResourceStream stream)
+	{
+		try
+		{
+			final InputStream in = stream.getInputStream();
+			try
+			{
+				return IOUtils.toByteArray(in);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(in);
+			}
+		}
+		catch (ResourceStreamNotFoundException e)
+		{
+			return null;
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException("could not read stylesheet " + path, e);
+		}
+	}
+
+	/**
+	 * @return whether one of the entity tags in the If-None-Match headers matches the given one, using the weak
+	 * comparison required for this header, or whether they contain <code>*</code>.
+	 */
+	private static boolean matchesIfNoneMatch(Request request, @Nonnull String etag)
+	{
+		if (!(request instanceof WebRequest))
+		{
+			return false;
+		}
+		for (String header : ((WebRequest) request).getHeaders("If-None-Match"))
+		{
+			for (String candidate : header.split(","))
+			{
+				String tag = candidate.trim();
+				if (tag.equals("*"))
+				{
+					return true;
+				}
+				if (tag.startsWith("W/"))
+				{
+					tag = tag.substring(2);
+				}
+				if (tag.equals(etag))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A processed stylesheet together with the modification time of its source.
+	 */
+	static final class ProcessedStylesheet
+	{
+		@Nonnull
+		final byte[] bytes;
+		@Nullable
+		final Time lastModified;
+		@Nonnull
+		final String etag;
+		@Nonnull
+		final String gzipEtag;
+
+		/**
+		 * Created on first use, racing threads at worst compress twice.
+		 */
+		@Nullable
+		private volatile byte[] gzipped;
+
+		ProcessedStylesheet(@Nonnull byte[] bytes, @Nullable Time lastModified)
+		{
+			this.bytes = bytes;
+			this.lastModified = lastModified;
+			final String digest = Digests.md5(bytes);
+			this.etag = '"' + digest + '"';
+			this.gzipEtag = '"' + digest + "-gzip" + '"';
+		}
+
+		@Nonnull
+		byte[] getGzipped()
+		{
+			byte[] result = gzipped;
+			if (result == null)
+			{
+				result = ResponseCompression.gzip(bytes);
+				gzipped = result;
+			}
+			return result;
+		}
+	}
+}
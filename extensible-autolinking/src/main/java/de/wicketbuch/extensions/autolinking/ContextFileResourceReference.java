@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.ServletRequest;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.resource.ContextRelativeResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Reference to a file in the context root that is sent directly from the file system if it is at least as large as a
+ * threshold, instead of being read through the servlet context. Such files also answer HTTP range requests, so that
+ * browsers can seek in videos and resume downloads. If the container can send files itself, as Tomcat announces with
+ * the request attribute {@value ContextFileResource#SENDFILE_SUPPORT}, it is handed the file and sends it without
+ * copying it through the JVM. Otherwise the file is copied to the response through a small buffer. Smaller files,
+ * stylesheets and files in a webapp that is not exploded to the file system are served like any other
+ * {@link ContextRelativeResource}.
+ * <p>
+ * Optionally, a precompressed <code>.br</code> or <code>.gz</code> file next to the requested one is sent instead,
+ * if the client accepts that coding and the compressed file is not older than the original.
+ */
+class ContextFileResourceReference extends ResourceReference
+{
+	private final long threshold;
+
+	private final boolean precompressed;
+
+	/**
+	 * @param path          path of the file, relative to the context root
+	 * @param threshold     size in bytes from which on the file is sent directly, {@link Long#MAX_VALUE} to never do so
+	 * @param precompressed whether to send precompressed variants of the file
+	 */
+	ContextFileResourceReference(@Nonnull String path, long threshold, boolean precompressed)
+	{
+		super(path);
+		this.threshold = threshold;
+		this.precompressed = precompressed;
+	}
+
+	@Nonnull
+	@Override
+	public IResource getResource()
+	{
+		return new ContextFileResource(getName(), threshold, precompressed);
+	}
+
+	/**
+	 * Serves a file from the context root, see {@link ContextFileResourceReference}.
+	 */
+	static class ContextFileResource extends ContextRelativeResource
+	{
+		private static final int STATUS_PARTIAL_CONTENT = 206;
+
+		private static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+		/**
+		 * Request attribute with which Tomcat announces that it can send files itself, see the documentation of its
+		 * <code>useSendfile</code> connector attribute.
+		 */
+		static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+		static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+		static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+		static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+		@Nonnull
+		private final String path;
+
+		private final long threshold;
+
+		private final boolean precompressed;
+
+		/**
+		 * @param path          path of the file, relative to the context root
+		 * @param threshold     size in bytes from which on the file is sent directly, {@link Long#MAX_VALUE} to never
+		 *                      do so
+		 * @param precompressed whether to send precompressed variants of the file
+		 */
+		ContextFileResource(@Nonnull String path, long threshold, boolean precompressed)
+		{
+			super(path);
+			this.path = path.startsWith("/") ? path : "/" + path;
+			this.threshold = threshold;
+			this.precompressed = precompressed;
+		}
+
+		@Override
+		protected ResourceResponse newResourceResponse(Attributes attributes)
+		{
+			if (precompressed && !path.endsWith(".css"))
+			{
+				ResponseCompression.addVary(attributes.getResponse());
+				final ResourceResponse brotli = newCompressedResponse(attributes, ResponseCompression.BROTLI, ".br");
+				if (brotli != null)
+				{
+					return brotli;
+				}
+				final ResourceResponse gzipped = newCompressedResponse(attributes, ResponseCompression.GZIP, ".gz");
+				if (gzipped != null)
+				{
+					return gzipped;
+				}
+			}
+
+			final File file = getFile(path);
+			if (file == null || file.length() < threshold || path.endsWith(".css"))
+			{
+				return super.newResourceResponse(attributes);
+			}
+
+			final long length = file.length();
+			final Time lastModified = Time.millis(file.lastModified());
+			final ResourceResponse response = new ResourceResponse();
+			response.setLastModified(lastModified);
+			if (!response.dataNeedsToBeWritten(attributes))
+			{
+				return response;
+			}
+			response.setContentType(Application.get().getMimeType(path));
+			response.getHeaders().addHeader("Accept-Ranges", "bytes");
+
+			final long[] range = requestedRange(attributes.getRequest(), length, lastModified);
+			final long start;
+			final long end;
+			if (range == null)
+			{
+				start = 0;
+				end = length;
+			}
+			else if (range[0] >= length || range[0] >= range[1])
+			{
+				response.setStatusCode(STATUS_RANGE_NOT_SATISFIABLE);
+				response.setContentRange("bytes */" + length);
+				response.setContentLength(0);
+				response.setWriteCallback(new WriteCallback()
+				{
+					@Override
+					public void writeData(Attributes attributes)
+					{
+					}
+				});
+				return response;
+			}
+			else
+			{
+				start = range[0];
+				end = Math.min(range[1], length);
+				response.setStatusCode(STATUS_PARTIAL_CONTENT);
+				response.setContentRange("bytes " + start + "-" + (end - 1) + "/" + length);
+			}
+			response.setContentLength(end - start);
+			response.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(Attributes attributes) throws IOException
+				{
+					send(file, start, end, attributes);
+				}
+			});
+			return response;
+		}
+
+		/**
+		 * @return a response sending the file compressed with the given coding, or <code>null</code> if the client
+		 * does not accept the coding or there is no up-to-date compressed file.
+		 */
+		@Nullable
+		private ResourceResponse newCompressedResponse(@Nonnull Attributes attributes, @Nonnull String coding,
+				@Nonnull String extension)
+		{
+			if (!ResponseCompression.accepts(attributes.getRequest(), coding))
+			{
+				return null;
+			}
+			final File original = getFile(path);
+			final File compressed = getFile(path + extension);
+			if (original == null || compressed == null || compressed.lastModified() < original.lastModified())
+			{
+				return null;
+			}
+
+			final ResourceResponse response = new ResourceResponse();
+			response.setLastModified(Time.millis(original.lastModified()));
+			if (!response.dataNeedsToBeWritten(attributes))
+			{
+				return response;
+			}
+			response.setContentType(Application.get().getMimeType(path));
+			response.getHeaders().addHeader("Content-Encoding", coding);
+			final long length = compressed.length();
+			response.setContentLength(length);
+			response.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(Attributes attributes) throws IOException
+				{
+					send(compressed, 0, length, attributes);
+				}
+			});
+			return response;
+		}
+
+		/**
+		 * @return the file in the exploded webapp, or <code>null</code> if the webapp is not exploded or the file does
+		 * not exist.
+		 */
+		@Nullable
+		private static File getFile(@Nonnull String path)
+		{
+			final String realPath = WebApplication.get().getServletContext().getRealPath(path);
+			if (realPath == null)
+			{
+				return null;
+			}
+			final File file = new File(realPath);
+			return file.isFile() ? file : null;
+		}
+
+		/**
+		 * Parses a <code>Range</code> header with a single byte range, as browsers send them. Multiple ranges are
+		 * answered with the whole file, which HTTP allows.
+		 *
+		 * @return start (inclusive) and end (exclusive) of the requested range, or <code>null</code> if the whole file
+		 * is to be sent.
+		 */
+		@Nullable
+		static long[] requestedRange(@Nonnull Request request, long length, @Nonnull Time lastModified)
+		{
+			if (!(request instanceof WebRequest))
+			{
+				return null;
+			}
+			final WebRequest webRequest = (WebRequest) request;
+			final String header = webRequest.getHeader("Range");
+			if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0)
+			{
+				return null;
+			}
+			final String ifRange = webRequest.getHeader("If-Range");
+			if (ifRange != null && !ifRange.equals(lastModified.toRfc1123TimestampString()))
+			{
+				// the file has changed since the client got the first part, so it needs all of it
+				return null;
+			}
+			final String spec = header.substring("bytes=".length()).trim();
+			final int dash = spec.indexOf('-');
+			if (dash < 0)
+			{
+				return null;
+			}
+			try
+			{
+				if (dash == 0)
+				{
+					final long suffixLength = Long.parseLong(spec.substring(1));
+					return new long[]{Math.max(0, length - suffixLength), length};
+				}
+				final long first = Long.parseLong(spec.substring(0, dash));
+				if (dash == spec.length() - 1)
+				{
+					return new long[]{first, length};
+				}
+				final long last = Long.parseLong(spec.substring(dash + 1));
+				return last < first ? null : new long[]{first, last == Long.MAX_VALUE ? last : last + 1};
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * Hand part of the file to the container if it can send files itself, otherwise copy it to the response.
+		 */
+		private static void send(@Nonnull File file, long start, long end, @Nonnull Attributes attributes)
+				throws IOException
+		{
+			final Object containerRequest = attributes.getRequest().getContainerRequest();
+			if (containerRequest instanceof ServletRequest)
+			{
+				final ServletRequest request = (ServletRequest) containerRequest;
+				if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)))
+				{
+					request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+					request.setAttribute(SENDFILE_START, start);
+					request.setAttribute(SENDFILE_END, end);
+					return;
+				}
+			}
+			write(file, start, end, Channels.newChannel(attributes.getResponse().getOutputStream()));
+		}
+
+		/**
+		 * Write part of the file with {@link FileChannel#transferTo(long, long, WritableByteChannel)}. The servlet
+		 * output stream is neither a file nor a socket channel, so this copies through a small buffer. The file is
+		 * closed once it has been written.
+		 */
+		private static void write(@Nonnull File file, long start, long end, @Nonnull WritableByteChannel target)
+				throws IOException
+		{
+			final FileInputStream in = new FileInputStream(file);
+			try
+			{
+				final FileChannel channel = in.getChannel();
+				long position = start;
+				while (position < end)
+				{
+					final long transferred = channel.transferTo(position, end - position, target);
+					if (transferred <= 0)
+					{
+						throw new EOFException("file was truncated while it was sent: " + file);
+					}
+					position += transferred;
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+	}
+}
@@ -16,37 +16,78 @@
  */
 package de.wicketbuch.extensions.autolinking;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-
 import javax.annotation.Nonnull;
 
-import org.apache.wicket.request.resource.ContextRelativeResource;
 import org.apache.wicket.request.resource.ContextRelativeResourceReference;
 import org.apache.wicket.request.resource.IResource;
 import org.apache.wicket.request.resource.ResourceReference;
-import org.apache.wicket.response.ByteArrayResponse;
 
 /**
  * ResourceResolver working from the context root (your "webapp folder".) Prefix "ctx:/".
  */
 class ContextRootResolver extends ResourceResolver
 {
-	private final Charset UTF8 = Charset.forName("UTF-8");
-
 	private final CssProcessor cssProcessor;
 
-	ContextRootResolver(CssProcessor cssProcessor)
+	@Nonnull
+	private final ResponseCompression compression;
+
+	private final LruCache<String, ContextCssResource.ProcessedStylesheet> cssCache =
+			new LruCache<String, ContextCssResource.ProcessedStylesheet>(0);
+
+	private volatile long cssStreamingThreshold = ExtensibleAutolinker.DEFAULT_CSS_STREAMING_THRESHOLD;
+
+	private volatile boolean fingerprinted = false;
+
+	private volatile long transferThreshold = Long.MAX_VALUE;
+
+	ContextRootResolver(CssProcessor cssProcessor, @Nonnull ResponseCompression compression)
 	{
 		super("ctx");
 		this.cssProcessor = cssProcessor;
+		this.compression = compression;
+	}
+
+	/**
+	 * @return the cache of processed stylesheets, shared by all references returned from
+	 * {@link #resolveForCss(String)}.
+	 */
+	@Nonnull
+	LruCache<String, ContextCssResource.ProcessedStylesheet> getCssCache()
+	{
+		return cssCache;
+	}
+
+	void setFingerprinted(boolean fingerprinted)
+	{
+		this.fingerprinted = fingerprinted;
+	}
+
+	void setTransferThreshold(long bytes)
+	{
+		this.transferThreshold = bytes;
+	}
+
+	void setCssStreamingThreshold(long bytes)
+	{
+		this.cssStreamingThreshold = bytes;
 	}
 
 	@Nonnull
 	@Override
-	public ResourceReference resolve(@Nonnull String src)
+	protected ResourceReference newReference(@Nonnull String src)
 	{
 		rejectIllegalPaths(src);
+		final long currentTransferThreshold = transferThreshold;
+		final boolean precompressed = compression.isPrecompressedFiles();
+		if (fingerprinted)
+		{
+			return new FingerprintedContextResourceReference(removePrefix(src), currentTransferThreshold, precompressed);
+		}
+		if (currentTransferThreshold != Long.MAX_VALUE || precompressed)
+		{
+			return new ContextFileResourceReference(removePrefix(src), currentTransferThreshold, precompressed);
+		}
 		return new ContextRelativeResourceReference(removePrefix(src));
 	}
 
@@ -61,7 +102,7 @@ class ContextRootResolver extends ResourceResolver
 
 	@Nonnull
 	@Override
-	public ResourceReference resolveForCss(@Nonnull final String src)
+	protected ResourceReference newCssReference(@Nonnull final String src)
 	{
 		rejectIllegalPaths(src);
 		return new ResourceReference(src)
@@ -70,31 +111,8 @@ class ContextRootResolver extends ResourceResolver
 			@Override
 			public IResource getResource()
 			{
-				return new ContextRelativeResource(removePrefix(src))
-				{
-					@Override
-					protected ResourceResponse newResourceResponse(Attributes attributes)
-					{
-						final ResourceResponse rr = super.newResourceResponse(attributes);
-
-						final WriteCallback wrappedWriteCallback = rr.getWriteCallback();
-
-						rr.setWriteCallback(new WriteCallback()
-						{
-							@Override
-							public void writeData(@Nonnull Attributes attributes) throws IOException
-							{
-								final ByteArrayResponse buffer = new ByteArrayResponse();
-								wrappedWriteCallback.writeData(new Attributes(attributes.getRequest(), buffer, attributes.getParameters()));
-								final String css = new String(buffer.getBytes(), UTF8);
-								final String processedCss = cssProcessor.process(css, null, src);
-								attributes.getResponse().write(processedCss);
-							}
-						});
-
-						return rr;
-					}
-				};
+				return new ContextCssResource(src, removePrefix(src), cssProcessor, cssCache, cssStreamingThreshold,
+						compression);
 			}
 		};
 	}
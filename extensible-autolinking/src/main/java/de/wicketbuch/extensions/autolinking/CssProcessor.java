@@ -18,36 +18,94 @@ package de.wicketbuch.extensions.autolinking;
 
 import static org.apache.wicket.resource.CssUrlReplacer.EMBED_BASE64;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.apache.wicket.Application;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.css.ICssCompressor;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
 import org.apache.wicket.resource.CssUrlReplacer;
 import org.apache.wicket.resource.IScopeAwareTextResourceProcessor;
-import org.apache.wicket.util.image.ImageUtil;
 
 /**
  * An {@link ICssCompressor} that uses {@link ExtensibleAutolinker} for extended autolinking. Unfortunately, the default
  * {@link CssUrlReplacer} shipped with Wicket is not very easily extensible, so parts of that class are copied here to
  * provide both "classic" and extended autolinking.
+ * <p>
+ * Processed stylesheets are kept in a bounded cache. Since the output contains URLs that depend on the request and on
+ * the caching strategy, the key consists of scope, name, a digest of the input, the base URL of the current request and
+ * the application's caching strategy.
  */
 class CssProcessor implements IScopeAwareTextResourceProcessor, ICssCompressor
 {
-	private static final Pattern URL_PATTERN = Pattern
-			.compile("url\\([ ]*['|\"]?([^ ]*?)['|\"]?[ ]*\\)");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Number of characters read at a time by {@link #process(Reader, Writer, Class, String)}.
+	 */
+	private static final int STREAMING_CHUNK_SIZE = 8 * 1024;
+
+	/**
+	 * Stylesheets with fewer distinct URLs than this are processed sequentially even if there is an executor, since
+	 * handing off the work would cost more than it saves.
+	 */
+	static final int MIN_URLS_FOR_PARALLEL_PROCESSING = 4;
 
 	@Nullable
 	private final ICssCompressor originalCssCompressor;
 	@Nonnull
 	private final ResourceResolvers resolvers;
 
+	@Nonnull
+	private final LruCache<ProcessedCssKey, String> cache = new LruCache<ProcessedCssKey, String>(0);
+
+	@Nonnull
+	private final PrecompiledStylesheets precompiled = new PrecompiledStylesheets();
+
+	@Nonnull
+	private final EmbeddedImageCache embeddedImages =
+			new EmbeddedImageCache(ExtensibleAutolinker.DEFAULT_EMBEDDED_IMAGE_CACHE_SIZE);
+
+	@Nonnull
+	private final ResourceInliner inliner = new ResourceInliner();
+
+	/**
+	 * Notified of every stylesheet processed live, used by the CSS precompiler of the Maven plugin.
+	 */
+	@Nullable
+	private volatile ProcessingListener listener;
+
+	@Nonnull
+	private volatile AutolinkerMetrics metrics = AutolinkerMetrics.NO_OP;
+
+	/**
+	 * Resolves the URLs of a stylesheet in parallel if set, see {@link #processInParallel}.
+	 */
+	@Nullable
+	private volatile Executor executor;
+
 	CssProcessor(ICssCompressor originalCssCompressor, @Nonnull ResourceResolvers resolvers)
 	{
 		this.resolvers = resolvers;
@@ -63,9 +121,95 @@ class CssProcessor implements IScopeAwareTextResourceProcessor, ICssCompressor
 
 	}
 
+	@Nonnull
+	LruCache<ProcessedCssKey, String> getCache()
+	{
+		return cache;
+	}
+
+	@Nonnull
+	ResourceInliner getInliner()
+	{
+		return inliner;
+	}
+
+	@Nonnull
+	EmbeddedImageCache getEmbeddedImages()
+	{
+		return embeddedImages;
+	}
+
+	@Nonnull
+	PrecompiledStylesheets getPrecompiled()
+	{
+		return precompiled;
+	}
+
+	void setListener(@Nullable ProcessingListener listener)
+	{
+		this.listener = listener;
+	}
+
+	void setMetrics(@Nonnull AutolinkerMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	void setExecutor(@Nullable Executor executor)
+	{
+		this.executor = executor;
+	}
+
 	@Nonnull
 	@Override
 	public String process(String input, @Nullable Class<?> scope, @Nonnull String name)
+	{
+		final ProcessingListener currentListener = listener;
+		final boolean usePrecompiled = precompiled.isAvailable();
+		if (!usePrecompiled && !cache.isEnabled() && currentListener == null)
+		{
+			return measuredProcess(input, scope, name);
+		}
+
+		final ProcessedCssKey key = new ProcessedCssKey(input, scope, name);
+		if (usePrecompiled)
+		{
+			final String output = precompiled.get(key);
+			if (output != null)
+			{
+				return output;
+			}
+		}
+		final String cached = cache.get(key);
+		if (cached != null)
+		{
+			return cached;
+		}
+		final String output = measuredProcess(input, scope, name);
+		cache.put(key, output);
+		if (currentListener != null)
+		{
+			currentListener.processed(key, output);
+		}
+		return output;
+	}
+
+	@Nonnull
+	private String measuredProcess(String input, @Nullable Class<?> scope, @Nonnull String name)
+	{
+		final AutolinkerMetrics currentMetrics = metrics;
+		if (currentMetrics == AutolinkerMetrics.NO_OP)
+		{
+			return doProcess(input, scope, name);
+		}
+		final long start = System.nanoTime();
+		final String output = doProcess(input, scope, name);
+		currentMetrics.cssProcessed(System.nanoTime() - start, input.length(), output.length());
+		return output;
+	}
+
+	@Nonnull
+	private String doProcess(String input, @Nullable final Class<?> scope, @Nonnull String name)
 	{
 		if (originalCssCompressor instanceof IScopeAwareTextResourceProcessor)
 		{
@@ -75,78 +219,300 @@ class CssProcessor implements IScopeAwareTextResourceProcessor, ICssCompressor
 		{
 			input = originalCssCompressor.compress(input);
 		}
-		RequestCycle cycle = RequestCycle.get();
-		Url cssUrl = Url.parse(name);
-		Matcher matcher = URL_PATTERN.matcher(input);
-		StringBuffer output = new StringBuffer();
+		final Executor currentExecutor = executor;
+		if (currentExecutor != null)
+		{
+			return processInParallel(input, scope, name, currentExecutor);
+		}
+		if (resolvers.isBatching())
+		{
+			resolvers.resolveInBatches(findUrls(input), false);
+		}
+		return newScanner(scope, name).process(input);
+	}
 
-		while (matcher.find())
+	/**
+	 * @return the distinct URLs in the stylesheet, in order of their first occurrence.
+	 */
+	@Nonnull
+	private static Set<String> findUrls(@Nonnull String input)
+	{
+		final Set<String> urls = new LinkedHashSet<String>();
+		new CssUrlScanner(new CssUrlScanner.UrlRewriter()
+		{
+			@Nullable
+			@Override
+			public CharSequence rewrite(@Nonnull String url)
+			{
+				urls.add(url);
+				return null;
+			}
+		}).process(input);
+		return urls;
+	}
+
+	/**
+	 * @return whether {@link #process(Reader, Writer, Class, String)} gives the same result as
+	 * {@link #process(String, Class, String)}. This is not the case if there is another compressor that needs to see
+	 * the whole stylesheet, or if precompiled stylesheets or a listener are involved.
+	 */
+	boolean canStream()
+	{
+		return originalCssCompressor == null && listener == null && !precompiled.isAvailable();
+	}
+
+	/**
+	 * Process a stylesheet from a reader to a writer, holding only a small part of it in memory at a time. Only a
+	 * single comment or string has to fit into memory as a whole. The result is not cached.
+	 *
+	 * @param reader source of the stylesheet
+	 * @param writer destination for the processed stylesheet
+	 * @param scope  the scope for relative URLs, or <code>null</code>
+	 * @param name   the name of the stylesheet
+	 * @throws IOException if reading or writing fails
+	 */
+	void process(@Nonnull Reader reader, @Nonnull Writer writer, @Nullable Class<?> scope, @Nonnull String name)
+			throws IOException
+	{
+		final AutolinkerMetrics currentMetrics = metrics;
+		final long start = currentMetrics == AutolinkerMetrics.NO_OP ? 0 : System.nanoTime();
+		final CssUrlScanner scanner = newScanner(scope, name);
+		char[] buffer = new char[STREAMING_CHUNK_SIZE];
+		CharBuffer view = CharBuffer.wrap(buffer);
+		final StringBuilder out = new StringBuilder(STREAMING_CHUNK_SIZE + (STREAMING_CHUNK_SIZE >> 3));
+		int length = 0;
+		long totalIn = 0;
+		long totalOut = 0;
+		boolean endOfInput = false;
+		while (!endOfInput)
 		{
-			final String urlString = matcher.group(1);
-			CharSequence processedUrl = urlString;
-			final ResourceResolver resolver = resolvers.getResolverForUrl(urlString);
-			boolean embedded = false;
-			if (resolver != null)
+			final int read = reader.read(buffer, length, buffer.length - length);
+			if (read < 0)
 			{
-				processedUrl = cycle.urlFor(resolver.resolve(urlString), null);
+				endOfInput = true;
 			}
-			else if (scope != null)
+			else
 			{
-				// if we didn't find anything to resolve, but we have a scope, that means we can let the
-				// original CssUrlReplacer logic run. If we don't have a scope, that means we are not in the classpath
-				// but in the webapp context, where PackageResourceReferences don't work.
+				length += read;
+				totalIn += read;
+			}
+			final int consumed = scanner.scan(view, 0, length, endOfInput, out);
+			writer.append(out);
+			totalOut += out.length();
+			out.setLength(0);
+			System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+			length -= consumed;
+			if (length == buffer.length)
+			{
+				// a comment or string longer than the buffer, which has to be scanned as a whole
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				view = CharBuffer.wrap(buffer);
+			}
+		}
+		writer.flush();
+		if (currentMetrics != AutolinkerMetrics.NO_OP)
+		{
+			currentMetrics.cssProcessed(System.nanoTime() - start, (int) Math.min(totalIn, Integer.MAX_VALUE),
+					(int) Math.min(totalOut, Integer.MAX_VALUE));
+		}
+	}
 
-				Url imageCandidateUrl = Url.parse(urlString);
+	@Nonnull
+	private CssUrlScanner newScanner(@Nullable final Class<?> scope, @Nonnull String name)
+	{
+		final RequestCycle cycle = RequestCycle.get();
+		final Url cssUrl = Url.parse(name);
+		return new CssUrlScanner(new MemoizingRewriter()
+		{
+			@Nullable
+			@Override
+			CharSequence rewriteFirst(@Nonnull String url)
+			{
+				return linkTarget(resolveUrl(url, scope, cssUrl), cycle);
+			}
+		});
+	}
 
-				if (imageCandidateUrl.isFull())
-				{
-					processedUrl = imageCandidateUrl.toString(Url.StringMode.FULL);
-				}
-				else if (imageCandidateUrl.isContextAbsolute())
-				{
-					processedUrl = imageCandidateUrl.toString();
-				}
-				else if (imageCandidateUrl.isDataUrl())
-				{
-					embedded = true;
-					processedUrl = imageCandidateUrl.toString();
-				}
-				else
-				{
-					// relativize against the url for the containing CSS file
-					Url cssUrlCopy = new Url(cssUrl);
-					cssUrlCopy.resolveRelative(imageCandidateUrl);
+	/**
+	 * Process a complete stylesheet in three steps: find its distinct URLs, resolve them in parallel on the executor and
+	 * then write the output in order, with the URLs of the resolved references rendered on the calling thread. Falls
+	 * back to sequential processing for stylesheets with only a few URLs.
+	 */
+	@Nonnull
+	private String processInParallel(@Nonnull String input, @Nullable final Class<?> scope, @Nonnull String name,
+	                                 @Nonnull Executor currentExecutor)
+	{
+		final Set<String> urls = findUrls(input);
+		resolvers.resolveInBatches(urls, false);
+		if (urls.size() < MIN_URLS_FOR_PARALLEL_PROCESSING)
+		{
+			return newScanner(scope, name).process(input);
+		}
 
-					// if the image should be processed as URL or base64 embedded
-					if (cssUrlCopy.getQueryString() != null
-							&& cssUrlCopy.getQueryString().contains(EMBED_BASE64))
+		final Application application = Application.get();
+		final Session session = Session.exists() ? Session.get() : null;
+		final Url cssUrl = Url.parse(name);
+		final Map<String, FutureTask<Object>> resolved = new HashMap<String, FutureTask<Object>>();
+		for (final String url : urls)
+		{
+			final FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws Exception
+				{
+					// the executor may run this on the calling thread, whose context has to be kept
+					final ThreadContext previous = ThreadContext.detach();
+					ThreadContext.setApplication(application);
+					ThreadContext.setSession(session);
+					try
 					{
-						embedded = true;
-						PackageResourceReference imageReference = new PackageResourceReference(scope,
-								cssUrlCopy.toString().replace("?" + EMBED_BASE64, ""));
-						try
-						{
-							processedUrl = ImageUtil.createBase64EncodedImage(imageReference, true);
-						} catch (Exception e)
-						{
-							throw new WicketRuntimeException(
-									"Error while embedding an image into the css: " + imageReference, e);
-						}
+						return resolveUrl(url, scope, cssUrl);
 					}
-					else
+					finally
 					{
-						PackageResourceReference imageReference = new PackageResourceReference(scope,
-								cssUrlCopy.toString());
-						processedUrl = cycle.urlFor(imageReference, null);
+						ThreadContext.restore(previous);
 					}
-
 				}
+			});
+			resolved.put(url, task);
+			try
+			{
+				currentExecutor.execute(task);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// the executor is saturated, do it ourselves
+				task.run();
+			}
+		}
+
+		final RequestCycle cycle = RequestCycle.get();
+		return new CssUrlScanner(new MemoizingRewriter()
+		{
+			@Nullable
+			@Override
+			CharSequence rewriteFirst(@Nonnull String url)
+			{
+				return linkTarget(await(resolved.get(url)), cycle);
+			}
+		}).process(input);
+	}
+
+	/**
+	 * Runs the task on the calling thread if no worker has picked it up yet, then waits for its result. This cannot
+	 * hang on an executor that silently discards tasks or whose workers are all waiting themselves.
+	 */
+	@Nullable
+	private static Object await(@Nonnull FutureTask<Object> task)
+	{
+		task.run();
+		try
+		{
+			return task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WicketRuntimeException("interrupted while processing css", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
 			}
-			matcher.appendReplacement(output,
-					embedded ? "url(" + processedUrl + ")" : "url('" + processedUrl + "')");
+			throw new WicketRuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * @param target result of {@link #resolveUrl(String, Class, Url)}
+	 * @return the replacement for the URL, or <code>null</code> if the URL is to be kept as it is.
+	 */
+	@Nullable
+	private static CharSequence linkTarget(@Nullable Object target, @Nonnull RequestCycle cycle)
+	{
+		if (target instanceof ResourceReference)
+		{
+			return cycle.urlFor((ResourceReference) target, null);
+		}
+		return (CharSequence) target;
+	}
+
+	/**
+	 * Resolves a URL found in a stylesheet without rendering any URLs, so that this can be done without a request
+	 * cycle. Only the application and the session are needed in the thread context.
+	 *
+	 * @return a {@link ResourceReference} to be linked, the final replacement for the URL, or <code>null</code> if the
+	 * URL is to be kept as it is.
+	 */
+	@Nullable
+	private Object resolveUrl(@Nonnull String urlString, @Nullable Class<?> scope, @Nonnull Url cssUrl)
+	{
+		final ResourceResolver resolver = resolvers.getResolverForUrl(urlString);
+		if (resolver != null)
+		{
+			final AutolinkerMetrics currentMetrics = metrics;
+			final long start = currentMetrics == AutolinkerMetrics.NO_OP ? 0 : System.nanoTime();
+			final ResourceReference reference = resolver.resolve(urlString);
+			if (currentMetrics != AutolinkerMetrics.NO_OP)
+			{
+				currentMetrics.resolved(resolver.getUrlPrefix(), System.nanoTime() - start);
+			}
+			return inlineOrLink(reference);
+		}
+		if (scope == null)
+		{
+			// if we didn't find anything to resolve, but we have a scope, that means we can let the
+			// original CssUrlReplacer logic run. If we don't have a scope, that means we are not in the classpath
+			// but in the webapp context, where PackageResourceReferences don't work.
+			return null;
+		}
+
+		Url imageCandidateUrl = Url.parse(urlString);
+
+		if (imageCandidateUrl.isFull() || imageCandidateUrl.isContextAbsolute() || imageCandidateUrl.isDataUrl())
+		{
+			return null;
+		}
+
+		// relativize against the url for the containing CSS file
+		Url cssUrlCopy = new Url(cssUrl);
+		cssUrlCopy.resolveRelative(imageCandidateUrl);
+
+		// if the image should be processed as URL or base64 embedded
+		if (cssUrlCopy.getQueryString() != null
+				&& cssUrlCopy.getQueryString().contains(EMBED_BASE64))
+		{
+			PackageResourceReference imageReference = new PackageResourceReference(scope,
+					cssUrlCopy.toString().replace("?" + EMBED_BASE64, ""));
+			final String dataUri;
+			try
+			{
+				dataUri = embeddedImages.embed(imageReference);
+			} catch (Exception e)
+			{
+				throw new WicketRuntimeException(
+						"Error while embedding an image into the css: " + imageReference, e);
+			}
+			return dataUri != null ? dataUri : imageReference;
+		}
+		else
+		{
+			PackageResourceReference imageReference = new PackageResourceReference(scope,
+					cssUrlCopy.toString());
+			return inlineOrLink(imageReference);
 		}
-		matcher.appendTail(output);
-		return output.toString();
+	}
+
+	/**
+	 * @return a data URI with the resource if the inlining policy says so, otherwise the reference itself.
+	 */
+	@Nonnull
+	private Object inlineOrLink(@Nonnull ResourceReference reference)
+	{
+		final String dataUri = inliner.inline(reference);
+		return dataUri != null ? dataUri : reference;
 	}
 
 	@Nullable
@@ -155,4 +521,132 @@ class CssProcessor implements IScopeAwareTextResourceProcessor, ICssCompressor
 	{
 		return null;
 	}
+
+	/**
+	 * Rewrites each distinct URL of a stylesheet only once. Repeated URLs, like the same icon or background used in
+	 * many rules, cost a map lookup instead of resolving, embedding and rendering them again. Lives only as long as the
+	 * scanner of a single stylesheet, so it needs neither bounds nor invalidation.
+	 */
+	private abstract static class MemoizingRewriter implements CssUrlScanner.UrlRewriter
+	{
+		/**
+		 * Stands for <code>null</code>, URLs to be kept as they are.
+		 */
+		private static final CharSequence UNCHANGED = new String();
+
+		private final Map<String, CharSequence> rewritten = new HashMap<String, CharSequence>();
+
+		@Nullable
+		@Override
+		public final CharSequence rewrite(@Nonnull String url)
+		{
+			CharSequence replacement = rewritten.get(url);
+			if (replacement == null)
+			{
+				replacement = rewriteFirst(url);
+				if (replacement == null)
+				{
+					replacement = UNCHANGED;
+				}
+				rewritten.put(url, replacement);
+			}
+			return replacement == UNCHANGED ? null : replacement;
+		}
+
+		/**
+		 * @see CssUrlScanner.UrlRewriter#rewrite(String)
+		 */
+		@Nullable
+		abstract CharSequence rewriteFirst(@Nonnull String url);
+	}
+
+	/**
+	 * Receives stylesheets after they have been processed.
+	 */
+	interface ProcessingListener
+	{
+		void processed(@Nonnull ProcessedCssKey key, @Nonnull String output);
+	}
+
+	/**
+	 * Identifies a processed stylesheet in the cache and among the precompiled stylesheets.
+	 */
+	static final class ProcessedCssKey
+	{
+		@Nullable
+		private final Class<?> scope;
+		@Nonnull
+		private final String name;
+		@Nonnull
+		private final String digest;
+		@Nonnull
+		private final String baseUrl;
+		@Nullable
+		private final Object cachingStrategy;
+
+		ProcessedCssKey(@Nonnull String input, @Nullable Class<?> scope, @Nonnull String name)
+		{
+			this.scope = scope;
+			this.name = name;
+			this.digest = Digests.md5(input.getBytes(UTF8));
+			this.baseUrl = RequestCycle.get().getUrlRenderer().getBaseUrl().toString();
+			this.cachingStrategy = Application.get().getResourceSettings().getCachingStrategy();
+		}
+
+		@Nullable
+		Class<?> getScope()
+		{
+			return scope;
+		}
+
+		@Nonnull
+		String getName()
+		{
+			return name;
+		}
+
+		@Nonnull
+		String getDigest()
+		{
+			return digest;
+		}
+
+		@Nonnull
+		String getBaseUrl()
+		{
+			return baseUrl;
+		}
+
+		@Nonnull
+		String getCachingStrategyName()
+		{
+			return cachingStrategy != null ? cachingStrategy.getClass().getName() : "";
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof ProcessedCssKey))
+			{
+				return false;
+			}
+			final ProcessedCssKey other = (ProcessedCssKey) o;
+			return scope == other.scope && name.equals(other.name) && digest.equals(other.digest) &&
+					baseUrl.equals(other.baseUrl) && cachingStrategy == other.cachingStrategy;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = scope != null ? scope.hashCode() : 0;
+			result = 31 * result + name.hashCode();
+			result = 31 * result + digest.hashCode();
+			result = 31 * result + baseUrl.hashCode();
+			return result;
+		}
+	}
 }
@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Finds the URLs in a stylesheet in a single pass and copies everything else unchanged. Recognized are
+ * <code>url(...)</code> with or without quotes, the quoted form of <code>@import "..."</code> and the quoted URLs
+ * directly inside <code>image-set(...)</code>. Comments and all other strings are copied as they are, even if they
+ * contain something that looks like a URL.
+ * <p>
+ * A scanner is stateful and must only be used for one stylesheet. It can be fed the stylesheet in chunks, see
+ * {@link #scan(CharSequence, int, int, boolean, StringBuilder)}.
+ */
+final class CssUrlScanner
+{
+	/**
+	 * Decides what to replace a URL with.
+	 */
+	interface UrlRewriter
+	{
+		/**
+		 * @param url the URL as written in the stylesheet, without quotes and surrounding whitespace.
+		 * @return the replacement, or <code>null</code> to keep the original text unchanged.
+		 */
+		@Nullable
+		CharSequence rewrite(@Nonnull String url);
+	}
+
+	@Nonnull
+	private final UrlRewriter rewriter;
+
+	/**
+	 * Nesting depth of parentheses at the current position.
+	 */
+	private int depth = 0;
+
+	/**
+	 * Depth of the innermost enclosing <code>image-set(</code>, or -1.
+	 */
+	private int imageSetDepth = -1;
+
+	CssUrlScanner(@Nonnull UrlRewriter rewriter)
+	{
+		this.rewriter = rewriter;
+	}
+
+	/**
+	 * Process a complete stylesheet.
+	 *
+	 * @param css stylesheet
+	 * @return the stylesheet with all URLs rewritten
+	 */
+	@Nonnull
+	String process(@Nonnull CharSequence css)
+	{
+		final StringBuilder out = new StringBuilder(css.length() + (css.length() >> 4));
+		scan(css, 0, css.length(), true, out);
+		return out.toString();
+	}
+
+	/**
+	 * Scan the given part of the input and append the result to <code>out</code>. Unless <code>endOfInput</code> is set,
+	 * a construct that is cut off at the end of the range is not consumed. The caller then has to pass the input again,
+	 * starting at the returned position, once more of it is available.
+	 *
+	 * @param in         input
+	 * @param from       first position to scan
+	 * @param to         end of the available input, exclusive
+	 * @param endOfInput whether there is no more input after <code>to</code>
+	 * @param out        output
+	 * @return the position up to which the input has been consumed
+	 */
+	int scan(@Nonnull CharSequence in, int from, int to, boolean endOfInput, @Nonnull StringBuilder out)
+	{
+		int copied = from;
+		int i = from;
+		while (i < to)
+		{
+			final char c = in.charAt(i);
+			if (c == '/')
+			{
+				if (i + 1 == to && !endOfInput)
+				{
+					break;
+				}
+				if (i + 1 < to && in.charAt(i + 1) == '*')
+				{
+					final int end = indexOf(in, "*/", i + 2, to);
+					if (end < 0)
+					{
+						if (!endOfInput)
+						{
+							break;
+						}
+						i = to;
+					}
+					else
+					{
+						i = end + 2;
+					}
+					continue;
+				}
+				i++;
+			}
+			else if (c == '"' || c == '\'')
+			{
+				final int end = endOfString(in, i, to);
+				if (end == to)
+				{
+					if (!endOfInput)
+					{
+						break;
+					}
+					i = to;
+					continue;
+				}
+				if (depth == imageSetDepth)
+				{
+					final CharSequence replacement = rewriter.rewrite(in.subSequence(i + 1, end).toString());
+					if (replacement != null)
+					{
+						out.append(in, copied, i).append(c).append(replacement).append(c);
+						copied = end + 1;
+					}
+				}
+				i = end + 1;
+			}
+			else if (c == '@')
+			{
+				final int identEnd = endOfIdentifier(in, i + 1, to);
+				if (identEnd == to && !endOfInput)
+				{
+					break;
+				}
+				if (regionMatches(in, i + 1, identEnd, "import"))
+				{
+					final int quote = skipWhitespace(in, identEnd, to);
+					if (quote == to)
+					{
+						if (!endOfInput)
+						{
+							break;
+						}
+						i = to;
+						continue;
+					}
+					final char q = in.charAt(quote);
+					if (q == '"' || q == '\'')
+					{
+						final int end = endOfString(in, quote, to);
+						if (end == to)
+						{
+							if (!endOfInput)
+							{
+								break;
+							}
+							i = to;
+							continue;
+						}
+						final CharSequence replacement = rewriter.rewrite(in.subSequence(quote + 1, end).toString());
+						if (replacement != null)
+						{
+							out.append(in, copied, quote).append(q).append(replacement).append(q);
+							copied = end + 1;
+						}
+						i = end + 1;
+						continue;
+					}
+				}
+				i = identEnd;
+			}
+			else if (isIdentifierChar(c))
+			{
+				final int identEnd = endOfIdentifier(in, i, to);
+				if (identEnd == to)
+				{
+					if (!endOfInput)
+					{
+						break;
+					}
+					i = to;
+					continue;
+				}
+				if (in.charAt(identEnd) == '(')
+				{
+					if (regionMatches(in, i, identEnd, "url"))
+					{
+						final int result = urlFunction(in, i, identEnd + 1, to, copied, out);
+						if (result == INCOMPLETE)
+						{
+							if (!endOfInput)
+							{
+								break;
+							}
+							i = to;
+							continue;
+						}
+						if (result != NO_URL)
+						{
+							if (result > 0)
+							{
+								copied = result;
+							}
+							i = Math.abs(result);
+							continue;
+						}
+					}
+					else if (regionMatches(in, i, identEnd, "image-set") ||
+							regionMatches(in, i, identEnd, "-webkit-image-set"))
+					{
+						depth++;
+						imageSetDepth = depth;
+						i = identEnd + 1;
+						continue;
+					}
+				}
+				i = identEnd;
+			}
+			else if (c == '(')
+			{
+				depth++;
+				i++;
+			}
+			else if (c == ')')
+			{
+				if (depth == imageSetDepth)
+				{
+					imageSetDepth = -1;
+				}
+				if (depth > 0)
+				{
+					depth--;
+				}
+				i++;
+			}
+			else
+			{
+				i++;
+			}
+		}
+		out.append(in, copied, i);
+		return i;
+	}
+
+	private static final int INCOMPLETE = Integer.MIN_VALUE;
+
+	private static final int NO_URL = 0;
+
+	/**
+	 * Handle <code>url(</code>. Returns {@link #INCOMPLETE} if the input ends before the closing parenthesis,
+	 * {@link #NO_URL} if this is not a well-formed url function, the position after it as a positive number if it has
+	 * been rewritten and copied to <code>out</code>, or the position after it as a negative number if it has to be kept
+	 * unchanged.
+	 */
+	private int urlFunction(@Nonnull CharSequence in, int start, int argumentStart, int to, int copied,
+	                        @Nonnull StringBuilder out)
+	{
+		int i = skipWhitespace(in, argumentStart, to);
+		if (i == to)
+		{
+			return INCOMPLETE;
+		}
+		final int urlStart;
+		final int urlEnd;
+		final char q = in.charAt(i);
+		if (q == '"' || q == '\'')
+		{
+			urlStart = i + 1;
+			urlEnd = endOfString(in, i, to);
+			if (urlEnd == to)
+			{
+				return INCOMPLETE;
+			}
+			i = urlEnd + 1;
+		}
+		else
+		{
+			urlStart = i;
+			while (i < to)
+			{
+				final char c = in.charAt(i);
+				if (c == '\\')
+				{
+					i += 2;
+				}
+				else if (c == ')' || Character.isWhitespace(c) || c == '"' || c == '\'' || c == '(')
+				{
+					break;
+				}
+				else
+				{
+					i++;
+				}
+			}
+			if (i >= to)
+			{
+				return INCOMPLETE;
+			}
+			urlEnd = i;
+		}
+		i = skipWhitespace(in, i, to);
+		if (i == to)
+		{
+			return INCOMPLETE;
+		}
+		if (in.charAt(i) != ')' || urlStart == urlEnd)
+		{
+			return NO_URL;
+		}
+		final int end = i + 1;
+		final CharSequence replacement = rewriter.rewrite(in.subSequence(urlStart, urlEnd).toString());
+		if (replacement == null)
+		{
+			return -end;
+		}
+		out.append(in, copied, start).append("url(");
+		if (startsWith(replacement, "data:"))
+		{
+			out.append(replacement);
+		}
+		else
+		{
+			out.append('\'').append(replacement).append('\'');
+		}
+		out.append(')');
+		return end;
+	}
+
+	/**
+	 * @return the position of the closing quote of the string starting at <code>start</code>, or <code>to</code> if
+	 * the input ends before it.
+	 */
+	private static int endOfString(@Nonnull CharSequence in, int start, int to)
+	{
+		final char quote = in.charAt(start);
+		int i = start + 1;
+		while (i < to)
+		{
+			final char c = in.charAt(i);
+			if (c == '\\')
+			{
+				i += 2;
+			}
+			else if (c == quote)
+			{
+				return i;
+			}
+			else
+			{
+				i++;
+			}
+		}
+		return to;
+	}
+
+	private static int endOfIdentifier(@Nonnull CharSequence in, int start, int to)
+	{
+		int i = start;
+		while (i < to && isIdentifierChar(in.charAt(i)))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	private static final boolean[] IDENTIFIER_CHARS = new boolean[128];
+
+	static
+	{
+		for (char c = 'a'; c <= 'z'; c++)
+		{
+			IDENTIFIER_CHARS[c] = true;
+			IDENTIFIER_CHARS[Character.toUpperCase(c)] = true;
+		}
+		for (char c = '0'; c <= '9'; c++)
+		{
+			IDENTIFIER_CHARS[c] = true;
+		}
+		IDENTIFIER_CHARS['-'] = true;
+		IDENTIFIER_CHARS['_'] = true;
+	}
+
+	private static boolean isIdentifierChar(char c)
+	{
+		return c >= 0x80 || IDENTIFIER_CHARS[c];
+	}
+
+	private static int skipWhitespace(@Nonnull CharSequence in, int start, int to)
+	{
+		int i = start;
+		while (i < to && Character.isWhitespace(in.charAt(i)))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return whether <code>in[start, end)</code> equals <code>expected</code>, ignoring case.
+	 */
+	private static boolean regionMatches(@Nonnull CharSequence in, int start, int end, @Nonnull String expected)
+	{
+		if (end - start != expected.length())
+		{
+			return false;
+		}
+		for (int i = 0; i < expected.length(); i++)
+		{
+			if (Character.toLowerCase(in.charAt(start + i)) != expected.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean startsWith(@Nonnull CharSequence s, @Nonnull String prefix)
+	{
+		return s.length() >= prefix.length() && regionMatches(s, 0, prefix.length(), prefix);
+	}
+
+	private static int indexOf(@Nonnull CharSequence in, @Nonnull String needle, int from, int to)
+	{
+		final char first = needle.charAt(0);
+		for (int i = from; i <= to - needle.length(); i++)
+		{
+			if (in.charAt(i) == first && regionMatches(in, i, i + needle.length(), needle))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
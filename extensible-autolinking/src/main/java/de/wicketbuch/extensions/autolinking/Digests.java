@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * Content digests used for cache keys and ETags.
+ */
+final class Digests
+{
+	private Digests()
+	{
+	}
+
+	/**
+	 * @param bytes content
+	 * @return hex representation of the MD5 digest of the content
+	 */
+	@Nonnull
+	static String md5(@Nonnull byte[] bytes)
+	{
+		try
+		{
+			return new BigInteger(1, MessageDigest.getInstance("MD5").digest(bytes)).toString(16);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new WicketRuntimeException("MD5 is not available", e);
+		}
+	}
+}
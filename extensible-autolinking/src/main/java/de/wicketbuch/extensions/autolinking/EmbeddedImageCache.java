@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.util.image.ImageUtil;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Creates the data URIs for images embedded into stylesheets with <code>?embedBase64</code> and keeps them, keyed by
+ * the image's reference and last modification time, so that processing a stylesheet again does not have to read and
+ * encode its images again. The cache is bounded by the total length of the data URIs it holds; the least recently
+ * used ones are evicted first.
+ * <p>
+ * Images larger than the maximum embedded size are linked instead of embedded.
+ */
+class EmbeddedImageCache
+{
+	private final Map<Key, String> entries = new LinkedHashMap<Key, String>(16, 0.75f, true);
+
+	private long maxLength;
+
+	private long length = 0;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	private volatile long maxImageSize = Long.MAX_VALUE;
+
+	EmbeddedImageCache(long maxLength)
+	{
+		setMaxLength(maxLength);
+	}
+
+	/**
+	 * @param maxLength maximum total length of all cached data URIs in characters, 0 to disable caching.
+	 */
+	synchronized void setMaxLength(long maxLength)
+	{
+		if (maxLength < 0)
+		{
+			throw new IllegalArgumentException("maximum cache size must not be negative: " + maxLength);
+		}
+		this.maxLength = maxLength;
+		trim();
+	}
+
+	/**
+	 * @param maxImageSize size in bytes above which images are linked instead of embedded.
+	 */
+	void setMaxImageSize(long maxImageSize)
+	{
+		if (maxImageSize < 0)
+		{
+			throw new IllegalArgumentException("maximum image size must not be negative: " + maxImageSize);
+		}
+		this.maxImageSize = maxImageSize;
+	}
+
+	/**
+	 * Does not need a request cycle, so it can be called from any thread that has the application attached.
+	 *
+	 * @param reference the image
+	 * @return a data URI with the image, or <code>null</code> if the image is too large to be embedded and has to be
+	 * linked instead.
+	 * @throws Exception if the image cannot be read, see {@link ImageUtil#createBase64EncodedImage}
+	 */
+	@Nullable
+	String embed(@Nonnull PackageResourceReference reference) throws Exception
+	{
+		final IResource resource = reference.getResource();
+		final IResourceStream stream = resource instanceof IStaticCacheableResource ?
+				((IStaticCacheableResource) resource).getResourceStream() : null;
+		if (stream == null)
+		{
+			return ImageUtil.createBase64EncodedImage(reference, true).toString();
+		}
+		try
+		{
+			final Bytes size = stream.length();
+			if (size != null && size.bytes() > maxImageSize)
+			{
+				return null;
+			}
+			final Key key = new Key(reference.getKey(), stream.lastModifiedTime());
+			final String cached = get(key);
+			if (cached != null)
+			{
+				return cached;
+			}
+			final String dataUri = ImageUtil.createBase64EncodedImage(reference, true).toString();
+			put(key, dataUri);
+			return dataUri;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	@Nullable
+	private synchronized String get(@Nonnull Key key)
+	{
+		final String dataUri = entries.get(key);
+		if (dataUri != null)
+		{
+			hits++;
+		}
+		else
+		{
+			misses++;
+		}
+		return dataUri;
+	}
+
+	private synchronized void put(@Nonnull Key key, @Nonnull String dataUri)
+	{
+		if (dataUri.length() > maxLength)
+		{
+			return;
+		}
+		final String previous = entries.put(key, dataUri);
+		if (previous != null)
+		{
+			length -= previous.length();
+		}
+		length += dataUri.length();
+		trim();
+	}
+
+	synchronized void clear()
+	{
+		entries.clear();
+		length = 0;
+	}
+
+	private void trim()
+	{
+		final Iterator<String> iterator = entries.values().iterator();
+		while (length > maxLength && iterator.hasNext())
+		{
+			length -= iterator.next().length();
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * @return the counters of this cache. Its maximum size is the maximum total length of the data URIs, capped at
+	 * {@link Integer#MAX_VALUE}.
+	 */
+	@Nonnull
+	synchronized CacheStatistics getStatistics()
+	{
+		final int max = (int) Math.min(maxLength, Integer.MAX_VALUE);
+		return new CacheStatistics(hits, misses, evictions, entries.size(), max);
+	}
+
+	private static final class Key
+	{
+		@Nonnull
+		private final ResourceReference.Key reference;
+		@Nullable
+		private final Time lastModified;
+
+		Key(@Nonnull ResourceReference.Key reference, @Nullable Time lastModified)
+		{
+			this.reference = reference;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key) o;
+			return reference.equals(other.reference) &&
+					(lastModified == null ? other.lastModified == null : lastModified.equals(other.lastModified));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * reference.hashCode() + (lastModified != null ? lastModified.hashCode() : 0);
+		}
+	}
+}
@@ -19,8 +19,10 @@ package de.wicketbuch.extensions.autolinking;
 import static org.apache.wicket.markup.parser.filter.WicketLinkTagHandler.AUTOLINK_ID;
 
 import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -28,8 +30,10 @@ import javax.annotation.Nullable;
 import org.apache.wicket.Application;
 import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.css.ICssCompressor;
 import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.Markup;
 import org.apache.wicket.markup.MarkupElement;
 import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.markup.MarkupParser;
@@ -40,9 +44,10 @@ import org.apache.wicket.markup.parser.AbstractMarkupFilter;
 import org.apache.wicket.markup.parser.IMarkupFilter;
 import org.apache.wicket.markup.resolver.IComponentResolver;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
 import org.apache.wicket.request.cycle.RequestCycle;
-import org.apache.wicket.request.resource.PackageResource;
-import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.resource.ResourceReference;
 
 /**
@@ -70,11 +75,56 @@ import org.apache.wicket.request.resource.ResourceReference;
  * ExtensibleAutolinker also activates autolinking in CSS files, replacing all <code>url(...)</code> URLs with the
  * proper references. If you use a custom {@link ICssCompressor}, make sure you set it <em>before</em> activating
  * ExtensibleAutolinker.
+ * <p>
+ * Stylesheets precompiled at build time by the <code>precompile-css</code> goal of the extensible-autolinking Maven
+ * plugin are served without processing them again. Stylesheets that are not precompiled are processed live.
+ * <p>
+ * In deployment mode, processed CSS files are cached. Use {@link #setCssCacheSize(int)} to change the size of that
+ * cache and {@link #getCssCacheStatistics()} to check whether it fits your application.
+ * <p>
+ * Autolinks without prefix are looked up relative to the containing class. The results of these lookups are cached as
+ * well, see {@link #setPackageResourceCacheSize(int)}. In development mode, the cache is cleared whenever Wicket's
+ * resource watcher detects a modified resource, and resources that were not found are looked up again every time.
+ * <p>
+ * To see what autolinking costs in production, install {@link JmxAutolinkerMetrics} or your own
+ * {@link AutolinkerMetrics} via {@link #setMetrics(AutolinkerMetrics)}.
+ * <p>
+ * To keep the first requests after a deployment from paying for resolving and processing, list your pages via
+ * {@link #addWarmUpClasses(Class[])} and stylesheets via {@link #addWarmUpStylesheets(String...)}.
+ * <p>
+ * Pages with many autolinked tags can be rendered without a component for each prefixed tag, see
+ * {@link #setComponentFreeRendering(boolean)}.
  */
 public class ExtensibleAutolinker
 {
 	static final String EXTENSIBLE_AUTOLINK_PREFIX = "_extensible_autolink_";
 
+	/**
+	 * Number of processed CSS files kept in deployment mode, unless changed via {@link #setCssCacheSize(int)}.
+	 */
+	public static final int DEFAULT_CSS_CACHE_SIZE = 256;
+
+	/**
+	 * Size in bytes above which <code>ctx:/</code> stylesheets are streamed, unless changed via
+	 * {@link #setCssStreamingThreshold(long)}.
+	 */
+	public static final long DEFAULT_CSS_STREAMING_THRESHOLD = 512 * 1024;
+
+	/**
+	 * Total length in characters of the data URIs of embedded CSS images that are kept, unless changed via
+	 * {@link #setEmbeddedImageCacheSize(long)}.
+	 */
+	public static final long DEFAULT_EMBEDDED_IMAGE_CACHE_SIZE = 2 * 1024 * 1024;
+
+	/**
+	 * Number of package resource lookups kept, unless changed via {@link #setPackageResourceCacheSize(int)}.
+	 */
+	public static final int DEFAULT_PACKAGE_RESOURCE_CACHE_SIZE = 2048;
+
+	private static final MetaDataKey<ExtensibleAutolinker> AUTOLINKER_KEY = new MetaDataKey<ExtensibleAutolinker>()
+	{
+	};
+
 	@Nonnull
 			/* package private for testing */ final CssProcessor cssProcessor;
 
@@ -102,25 +152,48 @@ public class ExtensibleAutolinker
 		});
 
 		application.getPageSettings().addComponentResolver(autolinker.newComponentResolver());
+		application.getRequestCycleSettings().addResponseFilter(autolinker.markers);
 		application.getResourceSettings().setCssCompressor(autolinker.cssProcessor);
 		application.getMarkupSettings().setAutomaticLinking(true);
+		if (application.usesDeploymentConfig())
+		{
+			autolinker.setCssCacheSize(DEFAULT_CSS_CACHE_SIZE);
+		}
+		application.setMetaData(AUTOLINKER_KEY, autolinker);
+		application.getApplicationListeners().add(autolinker.startupWarmUp);
 
 		return autolinker;
 	}
 
-	private final Map<String, String[]> tagsToAttributes = new HashMap<String, String[]>();
+	/**
+	 * @param application a Wicket application
+	 * @return the ExtensibleAutolinker configured for the given application, or <code>null</code> if there is none.
+	 */
+	@Nullable
+	public static ExtensibleAutolinker get(@Nonnull Application application)
+	{
+		return application.getMetaData(AUTOLINKER_KEY);
+	}
 
 	/**
-	 * Add a mapping for a tag name and its attributes that should be autolinked.
+	 * Immutable, {@link #setAttributesFor(String, String...)} replaces it with a modified copy, so that the markup
+	 * filter and the component resolver can read it without locking.
+	 */
+	@Nonnull
+	private volatile TagMatcher tagMatcher = TagMatcher.EMPTY;
+
+	/**
+	 * Add a mapping for a tag name and its attributes that should be autolinked. This can be done at any time, but
+	 * only affects markup parsed afterwards.
 	 *
 	 * @param tagName        the tag name, e.g. {@code img} or {@code object}
 	 * @param attributeNames the attribute names whose contents should be autolinked, e.g. {@code
 	 *                       href} or {@code data}
 	 * @return {@code this}, for method chaining
 	 */
-	public ExtensibleAutolinker setAttributesFor(String tagName, String... attributeNames)
+	public synchronized ExtensibleAutolinker setAttributesFor(String tagName, String... attributeNames)
 	{
-		tagsToAttributes.put(tagName, attributeNames);
+		tagMatcher = tagMatcher.with(tagName, attributeNames);
 		return this;
 	}
 
@@ -139,37 +212,18 @@ public class ExtensibleAutolinker
 			{
 				if (tag.getId() != null && tag.getId().startsWith(AUTOLINK_ID))
 				{
-					String[] attributeNames = tagsToAttributes.get(tag.getName());
-					if (attributeNames != null)
+					final String attributeName = tagMatcher.getAutolinkAttribute(tag);
+					if (attributeName != null)
 					{
-						String src = null;
-						String attributeName = null;
-						for (String possibleAttributeName : attributeNames)
-						{
-							src = tag.getAttribute(possibleAttributeName);
-							if (src != null)
-							{
-								attributeName = possibleAttributeName;
-								break;
-							}
-						}
-
+						final String src = tag.getAttribute(attributeName);
 						final ResourceResolver resolver = resolvers.getResolverForUrl(src);
 						if (resolver != null)
 						{
-							final ResourceReference resourceReference;
-							if (tag.getName().equals("link") &&
-									"stylesheet".equals(tag.getAttribute("rel")))
-							{
-								resourceReference = resolver.resolveForCss(src);
-							}
-							else
-							{
-								resourceReference = resolver.resolve(src);
-							}
-							return new ResourceReferenceAutoLink(tag.getId(), attributeName, resourceReference);
+							return new ResourceReferenceAutoLink(tag.getId(), attributeName,
+									ExtensibleAutolinker.this.resolve(resolver, isStylesheet(tag), src));
 						} else {
-							return new ResourceReferenceAutoLink(tag.getId(), container, attributeName, src);
+							return new ResourceReferenceAutoLink(tag.getId(), container, attributeName, src,
+									packageResources);
 						}
 					}
 				}
@@ -178,6 +232,93 @@ public class ExtensibleAutolinker
 		};
 	}
 
+	@Nonnull
+	private ResourceReference resolve(@Nonnull ResourceResolver resolver, boolean stylesheet, @Nonnull String src)
+	{
+		final AutolinkerMetrics currentMetrics = metrics;
+		final long start = currentMetrics == AutolinkerMetrics.NO_OP ? 0 : System.nanoTime();
+		final ResourceReference reference;
+		if (stylesheet)
+		{
+			reference = resolver.resolveForCss(src);
+		}
+		else
+		{
+			reference = resolver.resolve(src);
+		}
+		if (currentMetrics != AutolinkerMetrics.NO_OP)
+		{
+			currentMetrics.resolved(resolver.getUrlPrefix(), System.nanoTime() - start);
+		}
+		return reference;
+	}
+
+	/**
+	 * Renders the URL for an attribute that was replaced by a marker, see {@link AutolinkMarkers}. This does the same
+	 * as a component created by the {@link IComponentResolver} from {@link #newComponentResolver()} would.
+	 *
+	 * @param requestCycle the current request cycle
+	 * @param entry        the attribute's value and tag
+	 * @return the URL to write into the attribute.
+	 */
+	@Nonnull
+	CharSequence render(@Nonnull RequestCycle requestCycle, @Nonnull AutolinkMarkers.Entry entry)
+	{
+		final ResourceResolver resolver = resolvers.getResolverForUrl(entry.src);
+		if (resolver == null)
+		{
+			// cannot happen, resolvers are only ever added or replaced
+			return entry.src;
+		}
+		final ResourceReference reference = resolve(resolver, entry.stylesheet, entry.src);
+		if (entry.image)
+		{
+			final String dataUri = cssProcessor.getInliner().inline(reference);
+			if (dataUri != null)
+			{
+				return dataUri;
+			}
+		}
+		return RequestUrlMemo.urlFor(requestCycle, reference);
+	}
+
+	/**
+	 * Resolves the autolinked attribute of a tag in the same way as rendering does, so that the caches involved are
+	 * filled in advance. Unprefixed paths are looked up in the default locale.
+	 *
+	 * @param scope the class whose markup contains the tag
+	 * @param tag   a tag
+	 * @return the resolved reference if the tag links a stylesheet with a prefix, otherwise <code>null</code>.
+	 */
+	@Nullable
+	ResourceReference warmUp(@Nonnull Class<?> scope, @Nonnull ComponentTag tag)
+	{
+		final String attributeName = tagMatcher.getAutolinkAttribute(tag);
+		if (attributeName == null)
+		{
+			return null;
+		}
+		final String src = tag.getAttribute(attributeName);
+		final ResourceResolver resolver = resolvers.getResolverForUrl(src);
+		if (resolver == null)
+		{
+			packageResources.get(scope, src, Locale.getDefault(), null, null);
+			return null;
+		}
+		final ResourceReference reference = resolve(resolver, isStylesheet(tag), src);
+		return isStylesheet(tag) ? reference : null;
+	}
+
+	private static boolean isStylesheet(@Nonnull ComponentTag tag)
+	{
+		return tag.getName().equals("link") && "stylesheet".equals(tag.getAttribute("rel"));
+	}
+
+	private static boolean isImage(@Nonnull ComponentTag tag)
+	{
+		return "img".equals(tag.getName());
+	}
+
 	/**
 	 * Adapted from org.apache.wicket.markup.resolver.AutoLinkResolver.ResourceReferenceAutolink,
 	 * licensed under the Apache 2.0 license.
@@ -196,21 +337,13 @@ public class ExtensibleAutolinker
 		}
 
 		public ResourceReferenceAutoLink(String id, MarkupContainer parent,
-		                                 String attributeName, String possibleResourcePath)
+		                                 String attributeName, String possibleResourcePath,
+		                                 PackageResourceCache packageResources)
 		{
 			super(id);
 			this.attributeName = attributeName;
-			if (PackageResource.exists(parent.getClass(), possibleResourcePath, parent.getLocale(),
-					parent.getStyle(), parent.getVariation()))
-			{
-				resourceReference =
-						new PackageResourceReference(parent.getClass(), possibleResourcePath,
-								parent.getLocale(), parent.getStyle(), parent.getVariation());
-			}
-			else
-			{
-				resourceReference = null;
-			}
+			resourceReference = packageResources.get(parent.getClass(), possibleResourcePath, parent.getLocale(),
+					parent.getStyle(), parent.getVariation());
 		}
 
 		@Override
@@ -219,8 +352,19 @@ public class ExtensibleAutolinker
 			super.onComponentTag(tag);
 			if (resourceReference != null)
 			{
-				final CharSequence resourceUrl =
-						RequestCycle.get().urlFor(resourceReference, null);
+				CharSequence resourceUrl = null;
+				if (isImage(tag))
+				{
+					final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(getApplication());
+					if (autolinker != null)
+					{
+						resourceUrl = autolinker.cssProcessor.getInliner().inline(resourceReference);
+					}
+				}
+				if (resourceUrl == null)
+				{
+					resourceUrl = RequestUrlMemo.urlFor(RequestCycle.get(), resourceReference);
+				}
 				tag.put(attributeName, resourceUrl);
 			}
 		}
@@ -240,50 +384,170 @@ public class ExtensibleAutolinker
 	@Nullable
 	private IMarkupFilter newMarkupFilter(MarkupResourceStream resource)
 	{
+		return newMarkupFilter(resource, componentFreeRendering, resolveAtParseTime);
+	}
+
+	/**
+	 * @param componentFree   whether prefixed URLs are replaced by markers instead of being marked for a component
+	 * @param resolveIntoTags whether prefixed URLs are resolved into the tags while parsing, if there is a request
+	 * @return a {@link IMarkupFilter} like {@link #newMarkupFilter(MarkupResourceStream)}, but independent of the
+	 * current rendering settings. With both flags off, every autolinked tag keeps its original URL and gets an
+	 * autolink id, which is what {@link WarmUp} needs.
+	 */
+	@Nonnull
+	IMarkupFilter newMarkupFilter(MarkupResourceStream resource, final boolean componentFree,
+	                              final boolean resolveIntoTags)
+	{
+		// the mappings at the time parsing starts apply to the whole template
+		final TagMatcher matcher = tagMatcher;
+		final boolean batching = resolvers.isBatching();
 		return new AbstractMarkupFilter(resource)
 		{
 			private long nextId = 0;
 
+			/**
+			 * Paths of the marked tags, resolved together once the whole template has been parsed, see
+			 * {@link ResourceResolver#isBatching()}.
+			 */
+			private final List<String> srcs = new ArrayList<String>();
+
+			private final List<String> cssSrcs = new ArrayList<String>();
+
 			@Nonnull
 			@Override
 			protected MarkupElement onComponentTag(@Nonnull ComponentTag tag) throws ParseException
 			{
-				if (tag.getId() == null)
+				if (tag.getId() == null && !tag.isClose())
 				{
-					final String[] attributeNames = tagsToAttributes.get(tag.getName());
-					if (attributeNames != null)
+					final String attributeName = matcher.getAutolinkAttribute(tag);
+					if (attributeName != null)
 					{
-						String src = null;
-						for (String attributeName : attributeNames)
+						final String src = tag.getAttribute(attributeName);
+						if (resolveIntoTags && resolveIntoTag(tag, attributeName, src))
 						{
-							src = tag.getAttribute(attributeName);
-							if (src != null)
-							{
-								break;
-							}
+							return tag;
+						}
+						if (componentFree && resolvers.getResolverForUrl(src) != null)
+						{
+							tag.put(attributeName, markers.marker(src, isStylesheet(tag), isImage(tag)));
+							tag.setModified(true);
 						}
-						if (src != null)
+						else
 						{
 							tag.setAutoComponentTag(true);
 							tag.setModified(true);
 							tag.setId(AUTOLINK_ID + getRequestUniqueId());
 							tag.setAutoComponentTag(true);
 						}
+						if (batching)
+						{
+							(isStylesheet(tag) ? cssSrcs : srcs).add(src);
+						}
 					}
 				}
 				return tag;
 			}
+
+			@Override
+			public void postProcess(Markup markup)
+			{
+				resolvers.resolveInBatches(srcs, false);
+				resolvers.resolveInBatches(cssSrcs, true);
+			}
 		};
 	}
 
+	/**
+	 * Resolves a prefixed URL and writes the resulting URL directly into the tag, so that no component is needed to
+	 * render it. The URL is context-absolute, because the parsed markup is shared by all pages using it, no matter
+	 * where they are mounted.
+	 *
+	 * @return <code>true</code> if the tag was resolved, <code>false</code> if it needs to be resolved at render time.
+	 */
+	private boolean resolveIntoTag(@Nonnull ComponentTag tag, @Nonnull String attributeName, @Nonnull String src)
+	{
+		final ResourceResolver resolver = resolvers.getResolverForUrl(src);
+		final RequestCycle requestCycle = RequestCycle.get();
+		if (resolver == null || requestCycle == null)
+		{
+			return false;
+		}
+		final ResourceReference reference = resolve(resolver, isStylesheet(tag), src);
+		if (isImage(tag))
+		{
+			final String dataUri = cssProcessor.getInliner().inline(reference);
+			if (dataUri != null)
+			{
+				tag.put(attributeName, dataUri);
+				tag.setModified(true);
+				return true;
+			}
+		}
+		final Url url = requestCycle.mapUrlFor(new ResourceReferenceRequestHandler(reference));
+		final Request request = requestCycle.getRequest();
+		final StringBuilder absoluteUrl = new StringBuilder();
+		appendPath(absoluteUrl, request.getContextPath());
+		appendPath(absoluteUrl, request.getFilterPath());
+		appendPath(absoluteUrl, url.toString());
+		tag.put(attributeName, absoluteUrl);
+		tag.setModified(true);
+		return true;
+	}
+
+	private static void appendPath(@Nonnull StringBuilder url, @Nullable String path)
+	{
+		if (path == null)
+		{
+			return;
+		}
+		int start = 0;
+		int end = path.length();
+		while (start < end && path.charAt(start) == '/')
+		{
+			start++;
+		}
+		while (end > start && path.charAt(end - 1) == '/')
+		{
+			end--;
+		}
+		if (start < end)
+		{
+			url.append('/').append(path, start, end);
+		}
+	}
+
+	@Nonnull
+	private final ResourceResolvers resolvers = new ResourceResolvers();
+
+	private volatile boolean resolveAtParseTime = false;
+
+	private volatile boolean componentFreeRendering = false;
+
+	@Nonnull
+	private final AutolinkMarkers markers = new AutolinkMarkers(this);
+
+	@Nonnull
+	private volatile AutolinkerMetrics metrics = AutolinkerMetrics.NO_OP;
+
 	@Nonnull
-	private ResourceResolvers resolvers = new ResourceResolvers();
+	private final ContextRootResolver contextRootResolver;
+
+	@Nonnull
+	private final ResponseCompression compression = new ResponseCompression();
+
+	@Nonnull
+	private final PackageResourceCache packageResources =
+			new PackageResourceCache(DEFAULT_PACKAGE_RESOURCE_CACHE_SIZE);
+
+	@Nonnull
+	private final WarmUp startupWarmUp = new WarmUp(this);
 
 	private ExtensibleAutolinker(ICssCompressor originalCssCompressor)
 	{
 		cssProcessor = new CssProcessor(originalCssCompressor, resolvers);
-		resolvers.add(new ClasspathRootResolver());
-		resolvers.add(new ContextRootResolver(cssProcessor));
+		contextRootResolver = new ContextRootResolver(cssProcessor, compression);
+		resolvers.add(new ClasspathRootResolver(compression));
+		resolvers.add(contextRootResolver);
 		setAttributesFor("link", "href");
 		setAttributesFor("script", "src");
 		setAttributesFor("img", "src");
@@ -291,8 +555,15 @@ public class ExtensibleAutolinker
 		setAttributesFor("embed", "src");
 	}
 
+	@Nonnull
+	ResourceResolvers getResolvers()
+	{
+		return resolvers;
+	}
+
 	/**
-	 * Add an extra scope to the autolinker.
+	 * Add an extra scope to the autolinker. This can be done at any time, also while the application is serving
+	 * requests.
 	 * @param scope The class to use as the starting point for relative paths.
 	 * @param prefix The prefix used to recognize the paths resolvable in this scope. For example, passing
 	 *                  <code>"myscope"</code> here will let you use paths prefixed with <code>myscope:/</code>.
@@ -301,7 +572,365 @@ public class ExtensibleAutolinker
 	@Nonnull
 	public ExtensibleAutolinker addScopePrefix(Class<?> scope, @Nonnull String prefix)
 	{
-		resolvers.add(new ClasspathResolver(scope, prefix));
+		return addResolver(new ClasspathResolver(scope, prefix, compression));
+	}
+
+	/**
+	 * Add a custom resolver, e.g. for resources from a database or a CDN. This can be done at any time, also while the
+	 * application is serving requests. A resolver with the same prefix as an existing one replaces it.
+	 *
+	 * @param resolver the resolver
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker addResolver(@Nonnull ResourceResolver resolver)
+	{
+		resolvers.add(resolver);
 		return this;
 	}
+
+	/**
+	 * Set the maximum number of processed CSS files to keep. The least recently used entries are evicted first. This
+	 * applies to the cache of the {@link CssProcessor} as well as to the cache of ready-to-serve <code>ctx:/</code>
+	 * stylesheets.
+	 *
+	 * @param maxEntries maximum number of entries, 0 to disable caching. Defaults to {@link #DEFAULT_CSS_CACHE_SIZE}
+	 *                   in deployment mode and 0 in development mode.
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setCssCacheSize(int maxEntries)
+	{
+		cssProcessor.getCache().setMaxSize(maxEntries);
+		contextRootResolver.getCssCache().setMaxSize(maxEntries);
+		return this;
+	}
+
+	/**
+	 * Send <code>ctx:/</code> files of at least the given size directly from the file system instead of reading them
+	 * through the servlet context, and answer HTTP range requests for them. If the container supports it, as Tomcat
+	 * does with <code>useSendfile</code>, the file is handed to the container, which sends it without copying it
+	 * through the JVM. This is meant for large assets like fonts, videos or PDFs. It only applies to files in an
+	 * exploded webapp and not to stylesheets, which are still processed. Off by default. Set it in
+	 * {@link Application#init()}, before any markup is rendered.
+	 *
+	 * @param bytes file size in bytes from which on files are sent directly, {@link Long#MAX_VALUE} to turn this off
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setContextFileTransferThreshold(long bytes)
+	{
+		if (bytes < 0)
+		{
+			throw new IllegalArgumentException("threshold must not be negative: " + bytes);
+		}
+		contextRootResolver.setTransferThreshold(bytes);
+		return this;
+	}
+
+	/**
+	 * Send processed stylesheets, from <code>ctx:/</code> as well as from the classpath, gzipped to clients whose
+	 * <code>Accept-Encoding</code> allows that. Each processed stylesheet is compressed only once and kept compressed,
+	 * instead of being compressed by the servlet container for every request. Responses then carry a
+	 * <code>Vary: Accept-Encoding</code> header. Turn off compression of these stylesheets in the container or proxy
+	 * when using this. Off by default.
+	 *
+	 * @param gzipCss whether to send processed stylesheets gzipped
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setGzipCss(boolean gzipCss)
+	{
+		compression.setGzipCss(gzipCss);
+		return this;
+	}
+
+	/**
+	 * Send a <code>.br</code> or <code>.gz</code> file lying next to a requested <code>ctx:/</code> file instead of
+	 * it, if the client accepts that coding and the compressed file is at least as new as the original. Brotli is
+	 * preferred. This only applies to files in an exploded webapp and not to stylesheets, see
+	 * {@link #setGzipCss(boolean)} for those. Off by default. Set it in {@link Application#init()}, before any markup
+	 * is rendered.
+	 *
+	 * @param precompressedFiles whether to send precompressed variants of <code>ctx:/</code> files
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setServePrecompressedContextFiles(boolean precompressedFiles)
+	{
+		compression.setPrecompressedFiles(precompressedFiles);
+		return this;
+	}
+
+	/**
+	 * Set whether <code>ctx:/</code> resources other than stylesheets take part in the application's
+	 * {@link org.apache.wicket.request.resource.caching.IResourceCachingStrategy}. With Wicket's default strategy, their
+	 * URLs then contain a fingerprint of their content in deployment mode, and they are served with a
+	 * <code>Cache-Control</code> header that lets browsers keep them for a year without revalidation. This is off by
+	 * default, so URLs of <code>ctx:/</code> resources stay the same as in previous versions. Set it in
+	 * {@link Application#init()}, before any markup is rendered.
+	 *
+	 * @param fingerprinted whether to fingerprint <code>ctx:/</code> resources
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setFingerprintContextResources(boolean fingerprinted)
+	{
+		contextRootResolver.setFingerprinted(fingerprinted);
+		return this;
+	}
+
+	/**
+	 * Set the size above which <code>ctx:/</code> stylesheets are processed while they are sent instead of being read
+	 * into memory and cached. Streamed stylesheets are sent without Content-Length and ETag. If you use a custom
+	 * {@link ICssCompressor} or precompiled stylesheets, all stylesheets are processed as a whole.
+	 *
+	 * @param bytes file size in bytes. Defaults to {@link #DEFAULT_CSS_STREAMING_THRESHOLD}.
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setCssStreamingThreshold(long bytes)
+	{
+		contextRootResolver.setCssStreamingThreshold(bytes);
+		return this;
+	}
+
+	/**
+	 * Set the policy that decides which resources are inlined as <code>data:</code> URIs instead of being linked. It
+	 * applies to all autolinked URLs in stylesheets and in the <code>src</code> of <code>img</code> tags, with or
+	 * without prefix. For example, to inline all images of up to 2 KB:
+	 * <pre>autolinker.setInliningPolicy(new ImageSizeInliningPolicy(2048));</pre>
+	 *
+	 * @param policy the policy. Defaults to {@link InliningPolicy#NEVER}.
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setInliningPolicy(@Nonnull InliningPolicy policy)
+	{
+		cssProcessor.getInliner().setPolicy(policy);
+		cssProcessor.getCache().clear();
+		contextRootResolver.getCssCache().clear();
+		return this;
+	}
+
+	/**
+	 * Set the maximum total length of the data URIs kept for images embedded into stylesheets with
+	 * <code>?embedBase64</code>. Cached data URIs are reused until the image is modified.
+	 *
+	 * @param characters maximum total length, 0 to disable caching. Defaults to
+	 *                   {@link #DEFAULT_EMBEDDED_IMAGE_CACHE_SIZE}.
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setEmbeddedImageCacheSize(long characters)
+	{
+		cssProcessor.getEmbeddedImages().setMaxLength(characters);
+		return this;
+	}
+
+	/**
+	 * Set the size above which images are linked instead of embedded, even if the stylesheet asks for them to be
+	 * embedded with <code>?embedBase64</code>. By default, there is no limit.
+	 *
+	 * @param bytes maximum size of an embedded image
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setMaxEmbeddedImageSize(long bytes)
+	{
+		cssProcessor.getEmbeddedImages().setMaxImageSize(bytes);
+		return this;
+	}
+
+	/**
+	 * Set an executor to resolve the URLs in a stylesheet in parallel. The stylesheet is scanned once for its distinct
+	 * URLs, these are resolved, inlined or embedded on the executor, and the output is then written in order on the
+	 * request thread. This speeds up processing large stylesheets with many URLs, which mostly matters before they are
+	 * cached. Stylesheets with only a few URLs and streamed <code>ctx:/</code> stylesheets are still processed
+	 * sequentially. If the executor rejects a task, it is run on the request thread.
+	 * <p>
+	 * Use a bounded executor, e.g. <code>Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())</code>,
+	 * and shut it down when the application is destroyed. The default is <code>null</code>, no parallel processing.
+	 *
+	 * @param executor the executor, or <code>null</code> to process stylesheets sequentially
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setCssProcessingExecutor(@Nullable Executor executor)
+	{
+		cssProcessor.setExecutor(executor);
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of package resource lookups to keep for autolinks without prefix. When the cache is full,
+	 * it is cleared completely.
+	 *
+	 * @param maxEntries maximum number of entries, 0 to disable caching. Defaults to
+	 *                   {@link #DEFAULT_PACKAGE_RESOURCE_CACHE_SIZE}.
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setPackageResourceCacheSize(int maxEntries)
+	{
+		packageResources.setMaxSize(maxEntries);
+		return this;
+	}
+
+	/**
+	 * Set whether prefixed URLs in markup are resolved once, while the markup is parsed, instead of on every render.
+	 * Wicket caches parsed markup, so rendering a resolved tag then costs no more than rendering static markup, and no
+	 * component is created for it. This is off by default.
+	 * <p>
+	 * Resolved URLs are written as context-absolute URLs and stay the same for as long as Wicket keeps the markup
+	 * cached. Only turn this on if the URLs of your resources do not change while the application is running, e.g. if
+	 * your {@link org.apache.wicket.request.resource.caching.IResourceCachingStrategy} does not add a version that
+	 * depends on the modification time in development mode. URLs without prefix are always resolved at render time.
+	 *
+	 * @param resolveAtParseTime whether to resolve prefixed URLs at parse time
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setResolveAtParseTime(boolean resolveAtParseTime)
+	{
+		this.resolveAtParseTime = resolveAtParseTime;
+		return this;
+	}
+
+	/**
+	 * Set whether tags with prefixed URLs are rendered without a component. Instead, the URL is replaced by a marker
+	 * while the markup is parsed, and a response filter replaces the markers in each rendered page or Ajax response
+	 * with the URLs for the current request. Pages then have fewer components to resolve, render and detach. Unlike
+	 * with {@link #setResolveAtParseTime(boolean)}, the URLs are still rendered for every request, relative to the
+	 * page and with the current version from the application's
+	 * {@link org.apache.wicket.request.resource.caching.IResourceCachingStrategy}. This is off by default.
+	 * <p>
+	 * The markers are only replaced in responses that pass through the application's response filters: pages that
+	 * Wicket buffers, which it does by default, see
+	 * {@link org.apache.wicket.settings.RequestCycleSettings#setBufferResponse(boolean)}, and Ajax responses. Markup
+	 * rendered in other ways, e.g. with {@link org.apache.wicket.core.util.string.ComponentRenderer} for mails or
+	 * exports, still contains the markers, so don't use this if the application does that. URLs without prefix are
+	 * always rendered by components. This only affects markup parsed afterwards, so set it in
+	 * {@link Application#init()}.
+	 *
+	 * @param componentFreeRendering whether to render prefixed URLs without components
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setComponentFreeRendering(boolean componentFreeRendering)
+	{
+		this.componentFreeRendering = componentFreeRendering;
+		return this;
+	}
+
+	/**
+	 * Set the receiver of measurements taken by the autolinker, e.g. {@link JmxAutolinkerMetrics}. Defaults to
+	 * {@link AutolinkerMetrics#NO_OP}, which disables all measurements.
+	 *
+	 * @param metrics the metrics to report to
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setMetrics(@Nonnull AutolinkerMetrics metrics)
+	{
+		this.metrics = metrics;
+		cssProcessor.setMetrics(metrics);
+		packageResources.setMetrics(metrics);
+		return this;
+	}
+
+	/**
+	 * @return the receiver of measurements taken by the autolinker.
+	 */
+	@Nonnull
+	public AutolinkerMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Have the autolinks in the markup of the given classes resolved right after the application has been initialized,
+	 * before it serves its first request. Stylesheets linked from that markup are processed and cached as well. Call
+	 * this in {@link Application#init()}.
+	 * <p>
+	 * Only the markup file of each class itself is read, markup inherited from superclasses or in other variations has to
+	 * be added separately.
+	 *
+	 * @param classes the pages, panels or other components whose markup should be warmed up
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker addWarmUpClasses(@Nonnull Class<?>... classes)
+	{
+		startupWarmUp.addMarkupClasses(classes);
+		return this;
+	}
+
+	/**
+	 * Have the given stylesheets processed and cached right after the application has been initialized, before it
+	 * serves its first request. Call this in {@link Application#init()}.
+	 *
+	 * @param urls prefixed stylesheet URLs, e.g. <code>ctx:/css/main.css</code>
+	 * @return <code>this</code>, for method chaining.
+	 * @throws IllegalArgumentException if one of the URLs has no known prefix
+	 */
+	@Nonnull
+	public ExtensibleAutolinker addWarmUpStylesheets(@Nonnull String... urls)
+	{
+		startupWarmUp.addStylesheets(urls);
+		return this;
+	}
+
+	/**
+	 * Set whether stylesheets precompiled at build time are used. This is on by default and has no effect if there are
+	 * no precompiled stylesheets on the classpath.
+	 *
+	 * @param usePrecompiledCss whether to use precompiled stylesheets
+	 * @return <code>this</code>, for method chaining.
+	 */
+	@Nonnull
+	public ExtensibleAutolinker setUsePrecompiledCss(boolean usePrecompiledCss)
+	{
+		cssProcessor.getPrecompiled().setEnabled(usePrecompiledCss);
+		return this;
+	}
+
+	/**
+	 * @return the current counters of the processed CSS cache.
+	 */
+	@Nonnull
+	public CacheStatistics getCssCacheStatistics()
+	{
+		return cssProcessor.getCache().getStatistics();
+	}
+
+	/**
+	 * @return the current counters of the cache of processed <code>ctx:/</code> stylesheets, which are kept as
+	 * ready-to-serve bytes until the underlying file changes.
+	 */
+	@Nonnull
+	public CacheStatistics getContextCssCacheStatistics()
+	{
+		return contextRootResolver.getCssCache().getStatistics();
+	}
+
+	/**
+	 * @return the current counters of the cache of package resource lookups for autolinks without prefix.
+	 */
+	@Nonnull
+	public CacheStatistics getPackageResourceCacheStatistics()
+	{
+		return packageResources.getStatistics();
+	}
+
+	/**
+	 * @return the current counters of the cache of data URIs for images embedded into stylesheets. This cache is
+	 * bounded by the total length of the data URIs, so {@link CacheStatistics#getMaxSize()} is that length in
+	 * characters, see {@link #setEmbeddedImageCacheSize(long)}.
+	 */
+	@Nonnull
+	public CacheStatistics getEmbeddedImageCacheStatistics()
+	{
+		return cssProcessor.getEmbeddedImages().getStatistics();
+	}
 }
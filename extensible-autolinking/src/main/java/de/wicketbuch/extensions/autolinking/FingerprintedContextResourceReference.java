@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Reference to a file in the context root that takes part in the application's
+ * {@link org.apache.wicket.request.resource.caching.IResourceCachingStrategy}, like package resources do. With the
+ * default strategy in deployment mode, its URL then carries a digest of the file's content, which Wicket computes once
+ * and caches. Requests for the current version are answered with a <code>Cache-Control</code> header that allows
+ * browsers to keep the file for a year without revalidating it.
+ * <p>
+ * Large files can be transferred directly from the file and precompressed variants can be sent like with
+ * {@link ContextFileResourceReference}.
+ */
+class FingerprintedContextResourceReference extends ResourceReference
+{
+	static final String IMMUTABLE_CACHE_CONTROL =
+			"public, max-age=" + WebResponse.MAX_CACHE_DURATION.getMilliseconds() / 1000 + ", immutable";
+
+	private final long transferThreshold;
+
+	private final boolean precompressed;
+
+	/**
+	 * @param path              path of the file, relative to the context root
+	 * @param transferThreshold size in bytes from which on the file is transferred, see
+	 *                          {@link ContextFileResourceReference}
+	 * @param precompressed     whether to send precompressed variants of the file
+	 */
+	FingerprintedContextResourceReference(@Nonnull String path, long transferThreshold, boolean precompressed)
+	{
+		super(path);
+		this.transferThreshold = transferThreshold;
+		this.precompressed = precompressed;
+	}
+
+	@Nonnull
+	@Override
+	public IResource getResource()
+	{
+		final FingerprintedContextResource resource = new FingerprintedContextResource(getName(), transferThreshold,
+				precompressed);
+		resource.setCachingEnabled(true);
+		return resource;
+	}
+
+	private static class FingerprintedContextResource extends ContextFileResourceReference.ContextFileResource
+	{
+		FingerprintedContextResource(@Nonnull String path, long transferThreshold, boolean precompressed)
+		{
+			super(path, transferThreshold, precompressed);
+		}
+
+		@Override
+		protected void configureCache(ResourceResponse data, Attributes attributes)
+		{
+			super.configureCache(data, attributes);
+			final Response response = attributes.getResponse();
+			// the caching strategy only sets the maximum duration if the requested version is the current one
+			if (response instanceof WebResponse &&
+					data.getCacheDuration().compareTo(WebResponse.MAX_CACHE_DURATION) >= 0)
+			{
+				((WebResponse) response).setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Inlines all images up to a given size. Small icons are usually cheaper to inline than to request separately, while
+ * larger images are better cached by the browser on their own.
+ */
+public class ImageSizeInliningPolicy implements InliningPolicy
+{
+	private final long maxBytes;
+
+	/**
+	 * @param maxBytes the maximum size of an inlined image in bytes
+	 */
+	public ImageSizeInliningPolicy(long maxBytes)
+	{
+		if (maxBytes < 0)
+		{
+			throw new IllegalArgumentException("maximum size must not be negative: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public boolean shouldInline(@Nonnull ResourceReference reference, @Nonnull String contentType, long length)
+	{
+		return length <= maxBytes && contentType.startsWith("image/");
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.core.util.resource.locator.IResourceNameIterator;
+import org.apache.wicket.core.util.resource.locator.IResourceStreamLocator;
+import org.apache.wicket.util.resource.IResourceStream;
+
+/**
+ * Answers lookups in the packages covered by a {@link ClasspathIndex} from the index and leaves all others to the
+ * locator it replaces.
+ */
+class IndexedResourceStreamLocator implements IResourceStreamLocator
+{
+	@Nonnull
+	private final ClasspathIndex index;
+
+	@Nonnull
+	private final IResourceStreamLocator delegate;
+
+	IndexedResourceStreamLocator(@Nonnull ClasspathIndex index, @Nonnull IResourceStreamLocator delegate)
+	{
+		this.index = index;
+		this.delegate = delegate;
+	}
+
+	@Nullable
+	@Override
+	public IResourceStream locate(Class<?> clazz, String path)
+	{
+		final String classpathPath = path.startsWith("/") ? path.substring(1) : path;
+		if (index.covers(classpathPath))
+		{
+			return index.get(classpathPath);
+		}
+		return delegate.locate(clazz, path);
+	}
+
+	@Nullable
+	@Override
+	public IResourceStream locate(Class<?> clazz, String path, String style, String variation, Locale locale,
+	                              String extension, boolean strict)
+	{
+		final String classpathPath = path.startsWith("/") ? path.substring(1) : path;
+		if (!index.covers(classpathPath))
+		{
+			return delegate.locate(clazz, path, style, variation, locale, extension, strict);
+		}
+		// same as ResourceStreamLocator, but without falling back to the class loader
+		final IResourceNameIterator names =
+				newResourceNameIterator(classpathPath, locale, style, variation, extension, strict);
+		while (names.hasNext())
+		{
+			final IResourceStream stream = index.get(names.next());
+			if (stream != null)
+			{
+				stream.setLocale(names.getLocale());
+				stream.setStyle(names.getStyle());
+				stream.setVariation(names.getVariation());
+				return stream;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public IResourceNameIterator newResourceNameIterator(String path, Locale locale, String style, String variation,
+	                                                     String extension, boolean strict)
+	{
+		return delegate.newResourceNameIterator(path, locale, style, variation, extension, strict);
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Decides which autolinked resources are inlined as <code>data:</code> URIs instead of being linked, in stylesheets as
+ * well as in the <code>src</code> of <code>img</code> tags. Install a policy via
+ * {@link ExtensibleAutolinker#setInliningPolicy(InliningPolicy)}. The decision is made once per resource and then
+ * reused, except in development mode.
+ */
+public interface InliningPolicy
+{
+	/**
+	 * Never inlines anything. This is the default.
+	 */
+	InliningPolicy NEVER = new InliningPolicy()
+	{
+		@Override
+		public boolean shouldInline(@Nonnull ResourceReference reference, @Nonnull String contentType, long length)
+		{
+			return false;
+		}
+	};
+
+	/**
+	 * @param reference   the resource
+	 * @param contentType the content type of the resource
+	 * @param length      the size of the resource in bytes
+	 * @return whether to inline the resource
+	 */
+	boolean shouldInline(@Nonnull ResourceReference reference, @Nonnull String contentType, long length);
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * {@link AutolinkerMetrics} that counts everything in {@link StripedCounter}s and publishes the results as an MXBean
+ * named <code>de.wicketbuch.extensions.autolinking:type=AutolinkerMetrics,name=&lt;application name&gt;</code>.
+ * Install it in your {@link Application#init()} method after configuring the autolinker:
+ * <pre>JmxAutolinkerMetrics.install(this);</pre>
+ */
+public class JmxAutolinkerMetrics implements AutolinkerMetrics, AutolinkerMetricsMXBean
+{
+	@Nonnull
+	private final ExtensibleAutolinker autolinker;
+
+	private final ConcurrentMap<String, StripedCounter> resolutionsByPrefix =
+			new ConcurrentHashMap<String, StripedCounter>();
+
+	private final StripedCounter resolutions = new StripedCounter();
+
+	private final StripedCounter resolutionNanos = new StripedCounter();
+
+	private final StripedCounter cssProcessed = new StripedCounter();
+
+	private final StripedCounter cssProcessingNanos = new StripedCounter();
+
+	private final StripedCounter cssCharactersIn = new StripedCounter();
+
+	private final StripedCounter cssCharactersOut = new StripedCounter();
+
+	private final StripedCounter packageResourceMisses = new StripedCounter();
+
+	public JmxAutolinkerMetrics(@Nonnull ExtensibleAutolinker autolinker)
+	{
+		this.autolinker = autolinker;
+	}
+
+	/**
+	 * Install metrics for the autolinker of the given application and register them with the platform MBean server
+	 * until the application is destroyed.
+	 *
+	 * @param application an application for which {@link ExtensibleAutolinker#configure} has been called
+	 * @return the installed metrics
+	 */
+	@Nonnull
+	public static JmxAutolinkerMetrics install(@Nonnull Application application)
+	{
+		final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(application);
+		if (autolinker == null)
+		{
+			throw new IllegalArgumentException("ExtensibleAutolinker is not configured for application " +
+					application.getName());
+		}
+		final JmxAutolinkerMetrics metrics = new JmxAutolinkerMetrics(autolinker);
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name;
+		try
+		{
+			name = new ObjectName("de.wicketbuch.extensions.autolinking:type=AutolinkerMetrics,name=" +
+					ObjectName.quote(application.getName()));
+			server.registerMBean(metrics, name);
+		}
+		catch (JMException e)
+		{
+			throw new WicketRuntimeException("could not register autolinker metrics", e);
+		}
+		application.getApplicationListeners().add(new IApplicationListener()
+		{
+			@Override
+			public void onAfterInitialized(Application application)
+			{
+			}
+
+			@Override
+			public void onBeforeDestroyed(Application application)
+			{
+				try
+				{
+					server.unregisterMBean(name);
+				}
+				catch (JMException e)
+				{
+					throw new WicketRuntimeException("could not unregister autolinker metrics", e);
+				}
+			}
+		});
+		autolinker.setMetrics(metrics);
+		return metrics;
+	}
+
+	@Override
+	public void resolved(@Nonnull String prefix, long nanos)
+	{
+		StripedCounter counter = resolutionsByPrefix.get(prefix);
+		if (counter == null)
+		{
+			final StripedCounter newCounter = new StripedCounter();
+			counter = resolutionsByPrefix.putIfAbsent(prefix, newCounter);
+			if (counter == null)
+			{
+				counter = newCounter;
+			}
+		}
+		counter.increment();
+		resolutions.increment();
+		resolutionNanos.add(nanos);
+	}
+
+	@Override
+	public void cssProcessed(long nanos, int inputLength, int outputLength)
+	{
+		cssProcessed.increment();
+		cssProcessingNanos.add(nanos);
+		cssCharactersIn.add(inputLength);
+		cssCharactersOut.add(outputLength);
+	}
+
+	@Override
+	public void packageResourceMissing(@Nonnull Class<?> scope, @Nonnull String path)
+	{
+		packageResourceMisses.increment();
+	}
+
+	@Override
+	public long getResolutions()
+	{
+		return resolutions.sum();
+	}
+
+	@Override
+	public Map<String, Long> getResolutionsByPrefix()
+	{
+		final Map<String, Long> result = new TreeMap<String, Long>();
+		for (Map.Entry<String, StripedCounter> entry : resolutionsByPrefix.entrySet())
+		{
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		return result;
+	}
+
+	@Override
+	public long getAverageResolutionNanos()
+	{
+		return average(resolutionNanos, resolutions);
+	}
+
+	@Override
+	public long getCssProcessed()
+	{
+		return cssProcessed.sum();
+	}
+
+	@Override
+	public long getAverageCssProcessingNanos()
+	{
+		return average(cssProcessingNanos, cssProcessed);
+	}
+
+	@Override
+	public long getCssCharactersIn()
+	{
+		return cssCharactersIn.sum();
+	}
+
+	@Override
+	public long getCssCharactersOut()
+	{
+		return cssCharactersOut.sum();
+	}
+
+	@Override
+	public long getPackageResourceMisses()
+	{
+		return packageResourceMisses.sum();
+	}
+
+	@Override
+	public double getCssCacheHitRatio()
+	{
+		return autolinker.getCssCacheStatistics().getHitRatio();
+	}
+
+	@Override
+	public double getContextCssCacheHitRatio()
+	{
+		return autolinker.getContextCssCacheStatistics().getHitRatio();
+	}
+
+	@Override
+	public double getPackageResourceCacheHitRatio()
+	{
+		return autolinker.getPackageResourceCacheStatistics().getHitRatio();
+	}
+
+	@Override
+	public double getEmbeddedImageCacheHitRatio()
+	{
+		return autolinker.getEmbeddedImageCacheStatistics().getHitRatio();
+	}
+
+	@Override
+	public void reset()
+	{
+		for (StripedCounter counter : resolutionsByPrefix.values())
+		{
+			counter.reset();
+		}
+		resolutions.reset();
+		resolutionNanos.reset();
+		cssProcessed.reset();
+		cssProcessingNanos.reset();
+		cssCharactersIn.reset();
+		cssCharactersOut.reset();
+		packageResourceMisses.reset();
+	}
+
+	private static long average(@Nonnull StripedCounter total, @Nonnull StripedCounter count)
+	{
+		final long n = count.sum();
+		return n == 0 ? 0 : total.sum() / n;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A small, synchronized least-recently-used cache that counts its hits, misses and evictions. A maximum size of 0
+ * disables the cache: nothing is stored and lookups are not counted.
+ */
+class LruCache<K, V>
+{
+	private final Map<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+		{
+			if (size() > maxSize)
+			{
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private int maxSize;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	LruCache(int maxSize)
+	{
+		setMaxSize(maxSize);
+	}
+
+	synchronized boolean isEnabled()
+	{
+		return maxSize > 0;
+	}
+
+	@Nullable
+	synchronized V get(@Nonnull K key)
+	{
+		if (maxSize == 0)
+		{
+			return null;
+		}
+		final V value = entries.get(key);
+		if (value != null)
+		{
+			hits++;
+		}
+		else
+		{
+			misses++;
+		}
+		return value;
+	}
+
+	synchronized void put(@Nonnull K key, @Nonnull V value)
+	{
+		if (maxSize > 0)
+		{
+			entries.put(key, value);
+		}
+	}
+
+	synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	synchronized void setMaxSize(int maxSize)
+	{
+		if (maxSize < 0)
+		{
+			throw new IllegalArgumentException("maximum cache size must not be negative: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		final Iterator<V> eldest = entries.values().iterator();
+		while (entries.size() > maxSize)
+		{
+			eldest.next();
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	@Nonnull
+	synchronized CacheStatistics getStatistics()
+	{
+		return new CacheStatistics(hits, misses, evictions, entries.size(), maxSize);
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.core.util.resource.locator.IResourceStreamLocator;
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.util.lang.Packages;
+import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.watch.IModificationWatcher;
+
+/**
+ * Caches whether a package resource exists, along with a reference to it, so that autolinks without prefix do not have
+ * to ask the resource stream locator on every render. Lookups are lock-free. When the cache is full, it is cleared as a
+ * whole.
+ * <p>
+ * In development mode, resources that could not be found are not cached, because they may be added at any time, and
+ * the cache is cleared whenever Wicket's resource watcher notices a change in one of the resources found. Each resource
+ * is registered with the watcher only once, no matter how often the cache is cleared and filled again.
+ */
+class PackageResourceCache
+{
+	/**
+	 * Marks a resource that does not exist, since the map cannot hold <code>null</code>.
+	 */
+	private static final Object MISSING = new Object();
+
+	@Nonnull
+	private final ConcurrentMap<Key, Object> entries = new ConcurrentHashMap<Key, Object>();
+
+	/**
+	 * Resources registered with the resource watcher, kept across {@link #clear()}.
+	 */
+	@Nonnull
+	private final Set<Key> watched = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+
+	@Nonnull
+	private final IChangeListener clearOnChange = new IChangeListener()
+	{
+		@Override
+		public void onChange()
+		{
+			clear();
+		}
+	};
+
+	private volatile int maxSize;
+
+	@Nonnull
+	private volatile AutolinkerMetrics metrics = AutolinkerMetrics.NO_OP;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	PackageResourceCache(int maxSize)
+	{
+		setMaxSize(maxSize);
+	}
+
+	void setMaxSize(int maxSize)
+	{
+		if (maxSize < 0)
+		{
+			throw new IllegalArgumentException("maximum cache size must not be negative: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		if (entries.size() > maxSize)
+		{
+			clear();
+		}
+	}
+
+	void setMetrics(@Nonnull AutolinkerMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Same as {@link PackageResource#exists(Class, String, Locale, String, String)}, but returns a reference to the
+	 * resource instead of a boolean.
+	 *
+	 * @return a reference to the resource, or <code>null</code> if there is no such resource.
+	 */
+	@Nullable
+	PackageResourceReference get(@Nonnull Class<?> scope, @Nonnull String path, @Nullable Locale locale,
+	                             @Nullable String style, @Nullable String variation)
+	{
+		final Key key = new Key(scope, path, locale, style, variation);
+		final Object cached = entries.get(key);
+		if (cached != null)
+		{
+			hits.incrementAndGet();
+			if (cached == MISSING)
+			{
+				metrics.packageResourceMissing(scope, path);
+				return null;
+			}
+			return (PackageResourceReference) cached;
+		}
+		misses.incrementAndGet();
+
+		final Application application = Application.get();
+		final IResourceStreamLocator locator = application.getResourceSettings().getResourceStreamLocator();
+		final IResourceStream stream =
+				locator.locate(scope, Packages.absolutePath(scope, path), style, variation, locale, null, false);
+		final boolean development = application.usesDevelopmentConfig();
+		if (stream == null)
+		{
+			if (!development)
+			{
+				put(key, MISSING);
+			}
+			metrics.packageResourceMissing(scope, path);
+			return null;
+		}
+		final PackageResourceReference reference =
+				new PackageResourceReference(scope, path, locale, style, variation);
+		put(key, reference);
+		if (development && watched.add(key))
+		{
+			final IModificationWatcher watcher = application.getResourceSettings().getResourceWatcher(true);
+			if (watcher != null)
+			{
+				watcher.add(stream, clearOnChange);
+			}
+		}
+		return reference;
+	}
+
+	private void put(@Nonnull Key key, @Nonnull Object value)
+	{
+		final int max = maxSize;
+		if (max == 0)
+		{
+			return;
+		}
+		if (entries.size() >= max)
+		{
+			clear();
+		}
+		entries.put(key, value);
+	}
+
+	void clear()
+	{
+		final int size = entries.size();
+		entries.clear();
+		evictions.addAndGet(size);
+	}
+
+	@Nonnull
+	CacheStatistics getStatistics()
+	{
+		return new CacheStatistics(hits.get(), misses.get(), evictions.get(), entries.size(), maxSize);
+	}
+
+	private static final class Key
+	{
+		@Nonnull
+		private final Class<?> scope;
+		@Nonnull
+		private final String path;
+		@Nullable
+		private final Locale locale;
+		@Nullable
+		private final String style;
+		@Nullable
+		private final String variation;
+
+		Key(@Nonnull Class<?> scope, @Nonnull String path, @Nullable Locale locale, @Nullable String style,
+		    @Nullable String variation)
+		{
+			this.scope = scope;
+			this.path = path;
+			this.locale = locale;
+			this.style = style;
+			this.variation = variation;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key) o;
+			return scope == other.scope && path.equals(other.path) && equal(locale, other.locale) &&
+					equal(style, other.style) && equal(variation, other.variation);
+		}
+
+		private static boolean equal(@Nullable Object a, @Nullable Object b)
+		{
+			return a == null ? b == null : a.equals(b);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = scope.hashCode();
+			result = 31 * result + path.hashCode();
+			result = 31 * result + (locale != null ? locale.hashCode() : 0);
+			result = 31 * result + (style != null ? style.hashCode() : 0);
+			result = 31 * result + (variation != null ? variation.hashCode() : 0);
+			return result;
+		}
+	}
+}
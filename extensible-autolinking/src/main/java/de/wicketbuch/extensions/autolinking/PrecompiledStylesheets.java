@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.util.io.IOUtils;
+
+/**
+ * Stylesheets that have been processed at build time by the CSS precompiler of the extensible-autolinking Maven
+ * plugin. They are listed in manifests at {@link #MANIFEST} on the classpath, which map scope and name of a stylesheet
+ * to the digest of its input, the base URL and caching strategy it was processed for, and the location of the
+ * processed file. A precompiled stylesheet is only used if all of these match, anything else is processed live.
+ */
+class PrecompiledStylesheets
+{
+	static final String MANIFEST = "META-INF/extensible-autolinking/precompiled-css.properties";
+
+	static final String DIRECTORY = "META-INF/extensible-autolinking/precompiled/";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String SEPARATOR = "|";
+
+	private volatile boolean enabled = true;
+
+	@Nullable
+	private volatile Map<String, Entry> entries;
+
+	@Nonnull
+	private final ConcurrentMap<String, String> contents = new ConcurrentHashMap<String, String>();
+
+	void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return whether precompiled stylesheets are enabled and there are any.
+	 */
+	boolean isAvailable()
+	{
+		return enabled && !getEntries().isEmpty();
+	}
+
+	/**
+	 * @return the precompiled stylesheet for the given key, or <code>null</code> if there is none that matches.
+	 */
+	@Nullable
+	String get(@Nonnull CssProcessor.ProcessedCssKey key)
+	{
+		final Entry entry = getEntries().get(manifestKey(key));
+		if (entry == null || !entry.matches(key))
+		{
+			return null;
+		}
+		String content = contents.get(entry.file);
+		if (content == null)
+		{
+			content = load(entry.file);
+			if (content == null)
+			{
+				return null;
+			}
+			contents.putIfAbsent(entry.file, content);
+		}
+		return content;
+	}
+
+	@Nonnull
+	static String manifestKey(@Nonnull CssProcessor.ProcessedCssKey key)
+	{
+		final Class<?> scope = key.getScope();
+		return (scope != null ? scope.getName() : "") + SEPARATOR + key.getName();
+	}
+
+	@Nonnull
+	static String manifestValue(@Nonnull CssProcessor.ProcessedCssKey key, @Nonnull String file)
+	{
+		// the base URL goes last, because it is the only part that could contain the separator
+		return key.getDigest() + SEPARATOR + key.getCachingStrategyName() + SEPARATOR + file + SEPARATOR +
+				key.getBaseUrl();
+	}
+
+	@Nonnull
+	private Map<String, Entry> getEntries()
+	{
+		Map<String, Entry> result = entries;
+		if (result == null)
+		{
+			synchronized (this)
+			{
+				result = entries;
+				if (result == null)
+				{
+					result = loadManifests();
+					entries = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Nonnull
+	private static Map<String, Entry> loadManifests()
+	{
+		final Map<String, Entry> result = new HashMap<String, Entry>();
+		final Iterator<URL> manifests = getClassResolver().getResources(MANIFEST);
+		while (manifests.hasNext())
+		{
+			final Properties manifest = new Properties();
+			final URL url = manifests.next();
+			try
+			{
+				final InputStream in = url.openStream();
+				try
+				{
+					manifest.load(in);
+				}
+				finally
+				{
+					IOUtils.closeQuietly(in);
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException("could not read manifest of precompiled stylesheets " + url, e);
+			}
+			for (String name : manifest.stringPropertyNames())
+			{
+				final String[] parts = manifest.getProperty(name).split("\\|", 4);
+				if (parts.length == 4)
+				{
+					result.put(name, new Entry(parts[0], parts[1], parts[2], parts[3]));
+				}
+			}
+		}
+		return result.isEmpty() ? Collections.<String, Entry>emptyMap() : result;
+	}
+
+	@Nullable
+	private static String load(@Nonnull String file)
+	{
+		final InputStream in = getClassResolver().getClassLoader().getResourceAsStream(file);
+		if (in == null)
+		{
+			return null;
+		}
+		try
+		{
+			return new String(IOUtils.toByteArray(in), UTF8);
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException("could not read precompiled stylesheet " + file, e);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	@Nonnull
+	private static IClassResolver getClassResolver()
+	{
+		return Application.get().getApplicationSettings().getClassResolver();
+	}
+
+	private static final class Entry
+	{
+		@Nonnull
+		private final String digest;
+		@Nonnull
+		private final String cachingStrategy;
+		@Nonnull
+		private final String file;
+		@Nonnull
+		private final String baseUrl;
+
+		Entry(@Nonnull String digest, @Nonnull String cachingStrategy, @Nonnull String file, @Nonnull String baseUrl)
+		{
+			this.digest = digest;
+			this.cachingStrategy = cachingStrategy;
+			this.file = file;
+			this.baseUrl = baseUrl;
+		}
+
+		boolean matches(@Nonnull CssProcessor.ProcessedCssKey key)
+		{
+			return digest.equals(key.getDigest()) && baseUrl.equals(key.getBaseUrl()) &&
+					cachingStrategy.equals(key.getCachingStrategyName());
+		}
+	}
+}
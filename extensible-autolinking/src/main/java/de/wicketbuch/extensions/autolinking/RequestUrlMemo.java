@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Remembers the URLs rendered for resource references during one request, so that a resource that is linked many
+ * times on the same page, like an icon in a list, is only mapped once. The memo is kept in the metadata of the
+ * {@link RequestCycle} and is discarded when the base URL changes, because rendered URLs are relative to it. The memo
+ * keeps a copy of the base URL and compares by value, so that it also notices a base URL that is modified in place.
+ */
+final class RequestUrlMemo
+{
+	private static final MetaDataKey<RequestUrlMemo> KEY = new MetaDataKey<RequestUrlMemo>()
+	{
+	};
+
+	@Nonnull
+	private final Map<ResourceReference, CharSequence> urls = new HashMap<ResourceReference, CharSequence>();
+
+	private Url baseUrl;
+
+	private RequestUrlMemo()
+	{
+	}
+
+	/**
+	 * Same as {@link RequestCycle#urlFor(ResourceReference, org.apache.wicket.request.mapper.parameter.PageParameters)}
+	 * without parameters, but computes the URL only once per request and base URL.
+	 *
+	 * @param requestCycle the current request cycle
+	 * @param reference    the reference to render a URL for
+	 * @return the URL
+	 */
+	@Nonnull
+	static CharSequence urlFor(@Nonnull RequestCycle requestCycle, @Nonnull ResourceReference reference)
+	{
+		RequestUrlMemo memo = requestCycle.getMetaData(KEY);
+		if (memo == null)
+		{
+			memo = new RequestUrlMemo();
+			requestCycle.setMetaData(KEY, memo);
+		}
+		final Url currentBaseUrl = requestCycle.getUrlRenderer().getBaseUrl();
+		if (!currentBaseUrl.equals(memo.baseUrl))
+		{
+			memo.urls.clear();
+			memo.baseUrl = new Url(currentBaseUrl);
+		}
+		CharSequence url = memo.urls.get(reference);
+		if (url == null)
+		{
+			url = requestCycle.urlFor(reference, null);
+			memo.urls.put(reference, url);
+		}
+		return url;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.util.crypt.Base64;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+
+/**
+ * Applies the {@link InliningPolicy} and creates the <code>data:</code> URIs. Outside of development mode, the
+ * outcome is remembered per resource, so each resource is read at most once.
+ */
+class ResourceInliner
+{
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/**
+	 * Marks a resource that is not inlined, since the map cannot hold <code>null</code>.
+	 */
+	private static final String NOT_INLINED = "";
+
+	@Nonnull
+	private final ConcurrentMap<ResourceReference.Key, String> decisions =
+			new ConcurrentHashMap<ResourceReference.Key, String>();
+
+	@Nonnull
+	private volatile InliningPolicy policy = InliningPolicy.NEVER;
+
+	void setPolicy(@Nonnull InliningPolicy policy)
+	{
+		this.policy = policy;
+		decisions.clear();
+	}
+
+	@Nonnull
+	InliningPolicy getPolicy()
+	{
+		return policy;
+	}
+
+	/**
+	 * @param reference a resource
+	 * @return a <code>data:</code> URI containing the resource, or <code>null</code> if it is to be linked.
+	 */
+	@Nullable
+	String inline(@Nonnull ResourceReference reference)
+	{
+		final InliningPolicy currentPolicy = policy;
+		if (currentPolicy == InliningPolicy.NEVER)
+		{
+			return null;
+		}
+		final boolean remember = !Application.get().usesDevelopmentConfig();
+		if (remember)
+		{
+			final String decision = decisions.get(reference.getKey());
+			if (decision != null)
+			{
+				return decision == NOT_INLINED ? null : decision;
+			}
+		}
+		final String dataUri = createDataUri(currentPolicy, reference);
+		if (remember)
+		{
+			decisions.put(reference.getKey(), dataUri != null ? dataUri : NOT_INLINED);
+		}
+		return dataUri;
+	}
+
+	@Nullable
+	private static String createDataUri(@Nonnull InliningPolicy policy, @Nonnull ResourceReference reference)
+	{
+		final IResource resource = reference.getResource();
+		if (!(resource instanceof IStaticCacheableResource))
+		{
+			return null;
+		}
+		final IResourceStream stream = ((IStaticCacheableResource) resource).getResourceStream();
+		if (stream == null)
+		{
+			return null;
+		}
+		try
+		{
+			final Bytes length = stream.length();
+			final String contentType = stream.getContentType();
+			if (length == null || length.bytes() < 0 || contentType == null ||
+					!policy.shouldInline(reference, contentType, length.bytes()))
+			{
+				return null;
+			}
+			final InputStream in = stream.getInputStream();
+			final byte[] bytes;
+			try
+			{
+				bytes = IOUtils.toByteArray(in);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(in);
+			}
+			return "data:" + contentType + ";base64," + new String(Base64.encodeBase64(bytes), ASCII);
+		}
+		catch (ResourceStreamNotFoundException e)
+		{
+			return null;
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException("could not inline " + reference, e);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(stream);
+		}
+	}
+}
@@ -16,18 +16,50 @@
  */
 package de.wicketbuch.extensions.autolinking;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.annotation.Nonnull;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.request.resource.ResourceReferenceRegistry;
 
 /**
- * Resolves paths with a particular prefix to ResourceReferences.
+ * Resolves paths with a particular prefix to ResourceReferences. References are created once per path and then reused
+ * for as long as the resolver exists, i.e. for the lifetime of the application.
+ * <p>
+ * To link resources from your own stores, e.g. a database or a CDN, subclass this and register it with
+ * {@link ExtensibleAutolinker#addResolver(ResourceResolver)}. Subclasses only have to create new references, the
+ * resolver takes care of reusing them. If looking up many paths at once is cheaper than looking them up one by one,
+ * also override {@link #newReferences(Collection)} and {@link #newCssReferences(Collection)} and return
+ * <code>true</code> from {@link #isBatching()}. Stylesheets and templates are then scanned for all their paths first,
+ * which are passed to those methods together, at most once per stylesheet or template.
+ * <p>
+ * Resolvers are used by many threads at once and have to be thread-safe.
  */
-abstract class ResourceResolver
+public abstract class ResourceResolver
 {
 	@Nonnull
 	private final String urlPrefix;
 
+	@Nonnull
+	private final ConcurrentMap<String, ResourceReference> references =
+			new ConcurrentHashMap<String, ResourceReference>();
+
+	@Nonnull
+	private final ConcurrentMap<String, ResourceReference> cssReferences =
+			new ConcurrentHashMap<String, ResourceReference>();
+
+	/**
+	 * @param urlPrefix the prefix of the paths handled by this resolver, e.g. <code>"cdn"</code> for paths like
+	 *                  <code>cdn:/img/logo.png</code>. The separator <code>":/"</code> is appended if missing.
+	 */
 	protected ResourceResolver(@Nonnull String urlPrefix)
 	{
 		if (!urlPrefix.endsWith(":/"))
@@ -37,29 +69,195 @@ abstract class ResourceResolver
 		this.urlPrefix = urlPrefix;
 	}
 
+	/**
+	 * @return the prefix of the paths handled by this resolver, ending with <code>":/"</code>.
+	 */
 	@Nonnull
-	String getUrlPrefix()
+	public final String getUrlPrefix()
 	{
 		return urlPrefix;
 	}
 
 	/**
-	 * Resolves the path given to a ResourceReference.
+	 * Resolves the path given to a ResourceReference. Identical paths always resolve to the same instance, which is
+	 * also registered with the application's {@link ResourceReferenceRegistry}, so that Wicket can reuse the work it
+	 * does for mapping the reference and applying the caching strategy.
 	 *
 	 * @param src path
 	 * @return ResourceReference
 	 */
-	abstract ResourceReference resolve(String src);
+	@Nonnull
+	public final ResourceReference resolve(@Nonnull String src)
+	{
+		final ResourceReference reference = references.get(src);
+		return reference != null ? reference : intern(references, src, newReference(src));
+	}
 
 	/**
-	 * Resolves the path given to a ResourceReference that is able to handle autolinking in CSS files. For CSS files
-	 * in the classpath, this will typically be {@link org.apache.wicket.request.resource.CssResourceReference}, which
-	 * does this automatically. {@link ContextRootResolver}, for example, will instead return a custom reference,
-	 * because {@link org.apache.wicket.request.resource.CssResourceReference} only works in the classpath.
+	 * Resolves the path given to a ResourceReference that is able to handle autolinking in CSS files. Like
+	 * {@link #resolve(String)}, identical paths always resolve to the same, registered instance.
+	 *
 	 * @param src path
 	 * @return ResourceReference
 	 */
-	abstract ResourceReference resolveForCss(String src);
+	@Nonnull
+	public final ResourceReference resolveForCss(@Nonnull String src)
+	{
+		final ResourceReference reference = cssReferences.get(src);
+		return reference != null ? reference : intern(cssReferences, src, newCssReference(src));
+	}
+
+	/**
+	 * Resolves many paths at once, like {@link #resolve(String)}. References for paths that have not been resolved
+	 * before are created with a single call to {@link #newReferences(Collection)}.
+	 *
+	 * @param srcs paths
+	 * @return the references, by path, in the order of the paths given
+	 */
+	@Nonnull
+	public final Map<String, ResourceReference> resolve(@Nonnull Collection<String> srcs)
+	{
+		return resolveAll(references, srcs, false);
+	}
+
+	/**
+	 * Resolves many paths at once, like {@link #resolveForCss(String)}. References for paths that have not been
+	 * resolved before are created with a single call to {@link #newCssReferences(Collection)}.
+	 *
+	 * @param srcs paths
+	 * @return the references, by path, in the order of the paths given
+	 */
+	@Nonnull
+	public final Map<String, ResourceReference> resolveForCss(@Nonnull Collection<String> srcs)
+	{
+		return resolveAll(cssReferences, srcs, true);
+	}
+
+	@Nonnull
+	private Map<String, ResourceReference> resolveAll(@Nonnull ConcurrentMap<String, ResourceReference> resolved,
+	                                                  @Nonnull Collection<String> srcs, boolean css)
+	{
+		final Map<String, ResourceReference> result = new LinkedHashMap<String, ResourceReference>();
+		final List<String> missing = new ArrayList<String>();
+		for (String src : srcs)
+		{
+			final ResourceReference reference = resolved.get(src);
+			result.put(src, reference);
+			if (reference == null)
+			{
+				missing.add(src);
+			}
+		}
+		if (!missing.isEmpty())
+		{
+			final Map<String, ResourceReference> created = css ? newCssReferences(missing) : newReferences(missing);
+			for (String src : missing)
+			{
+				final ResourceReference reference = created.get(src);
+				if (reference == null)
+				{
+					throw new IllegalStateException(getClass().getName() + " did not create a reference for " + src);
+				}
+				result.put(src, intern(resolved, src, reference));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a new ResourceReference for the path given. Called by {@link #resolve(String)} once per path.
+	 *
+	 * @param src path
+	 * @return ResourceReference
+	 */
+	@Nonnull
+	protected abstract ResourceReference newReference(@Nonnull String src);
+
+	/**
+	 * Creates a new ResourceReference for the path given that is able to handle autolinking in CSS files. For CSS
+	 * files in the classpath, this will typically be {@link org.apache.wicket.request.resource.CssResourceReference},
+	 * which does this automatically. {@link ContextRootResolver}, for example, will instead return a custom reference,
+	 * because {@link org.apache.wicket.request.resource.CssResourceReference} only works in the classpath. Called by
+	 * {@link #resolveForCss(String)} once per path.
+	 *
+	 * @param src path
+	 * @return ResourceReference
+	 */
+	@Nonnull
+	protected abstract ResourceReference newCssReference(@Nonnull String src);
+
+	/**
+	 * Creates new ResourceReferences for many paths at once. Called by {@link #resolve(Collection)} with all paths that
+	 * have not been resolved before. The default implementation calls {@link #newReference(String)} for each of them.
+	 *
+	 * @param srcs paths
+	 * @return a reference for each of the paths, by path
+	 */
+	@Nonnull
+	protected Map<String, ResourceReference> newReferences(@Nonnull Collection<String> srcs)
+	{
+		final Map<String, ResourceReference> created = new LinkedHashMap<String, ResourceReference>();
+		for (String src : srcs)
+		{
+			created.put(src, newReference(src));
+		}
+		return created;
+	}
+
+	/**
+	 * Creates new ResourceReferences that are able to handle autolinking in CSS files for many paths at once. Called by
+	 * {@link #resolveForCss(Collection)} with all paths that have not been resolved before. The default implementation
+	 * calls {@link #newCssReference(String)} for each of them.
+	 *
+	 * @param srcs paths
+	 * @return a reference for each of the paths, by path
+	 */
+	@Nonnull
+	protected Map<String, ResourceReference> newCssReferences(@Nonnull Collection<String> srcs)
+	{
+		final Map<String, ResourceReference> created = new LinkedHashMap<String, ResourceReference>();
+		for (String src : srcs)
+		{
+			created.put(src, newCssReference(src));
+		}
+		return created;
+	}
+
+	/**
+	 * @return whether this resolver benefits from resolving many paths at once, see {@link #newReferences(Collection)}.
+	 * Collecting the paths costs an extra pass over stylesheets and templates, so this is <code>false</code> by
+	 * default.
+	 */
+	protected boolean isBatching()
+	{
+		return false;
+	}
+
+	/**
+	 * Stores the reference for the given path, preferring a reference of the same type that has already been
+	 * registered with the application under the same key.
+	 */
+	@Nonnull
+	private static ResourceReference intern(@Nonnull ConcurrentMap<String, ResourceReference> references,
+	                                        @Nonnull String src, @Nonnull ResourceReference created)
+	{
+		ResourceReference reference = created;
+		if (Application.exists())
+		{
+			final ResourceReferenceRegistry registry = Application.get().getResourceReferenceRegistry();
+			final ResourceReference registered = registry.getResourceReference(created.getKey(), false, false);
+			if (registered != null && registered.getClass() == created.getClass())
+			{
+				reference = registered;
+			}
+			else
+			{
+				registry.registerResourceReference(created);
+			}
+		}
+		final ResourceReference existing = references.putIfAbsent(src, reference);
+		return existing != null ? existing : reference;
+	}
 
 	/**
 	 * Remove the prefix used by this resolver from the given string.
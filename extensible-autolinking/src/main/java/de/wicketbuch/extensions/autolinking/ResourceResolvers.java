@@ -16,39 +16,139 @@
  */
 package de.wicketbuch.extensions.autolinking;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * Manages {@link ResourceResolver}s.
+ * <p>
+ * Every prefix ends with <code>":/"</code> (see {@link ResourceResolver}), so resolvers are indexed by their full
+ * prefix and a lookup only has to check the positions of that separator within the first characters of a url. The
+ * cost of a lookup therefore depends on the length of the longest prefix, not on the number of registered resolvers.
+ * If prefixes overlap, the longest one wins.
+ * <p>
+ * If any of the resolvers is {@link ResourceResolver#isBatching() batching}, callers that know many paths in advance
+ * pass them to {@link #resolveInBatches(Collection, boolean)} first.
+ * <p>
+ * Resolvers can be added at any time, also while requests are being processed.
  */
 class ResourceResolvers
 {
-	private final Map<String, ResourceResolver> resolvers = new HashMap<String, ResourceResolver>();
+	/**
+	 * The current configuration. It is never modified, {@link #add(ResourceResolver)} replaces it with a modified copy
+	 * instead, so that lookups need no locking and always see a consistent state.
+	 */
+	@Nonnull
+	private volatile Snapshot snapshot = new Snapshot(Collections.<String, ResourceResolver>emptyMap());
 
-	void add(@Nonnull ResourceResolver resolver)
+	synchronized void add(@Nonnull ResourceResolver resolver)
 	{
-		String prefix = resolver.getUrlPrefix();
-		resolvers.put(prefix, resolver);
+		final Map<String, ResourceResolver> resolvers = new HashMap<String, ResourceResolver>(snapshot.resolvers);
+		resolvers.put(resolver.getUrlPrefix(), resolver);
+		snapshot = new Snapshot(resolvers);
+	}
+
+	/**
+	 * @return whether any of the resolvers prefers to resolve many paths at once.
+	 */
+	boolean isBatching()
+	{
+		return snapshot.batching;
+	}
+
+	/**
+	 * Resolves the given paths with one batch per batching resolver, so that later calls to
+	 * {@link ResourceResolver#resolve(String)} or {@link ResourceResolver#resolveForCss(String)} find them resolved
+	 * already. Paths of other resolvers and paths without prefix are skipped.
+	 *
+	 * @param srcs paths
+	 * @param css  whether the paths are to be resolved for CSS
+	 */
+	void resolveInBatches(@Nonnull Collection<String> srcs, boolean css)
+	{
+		if (!snapshot.batching)
+		{
+			return;
+		}
+		final Map<ResourceResolver, List<String>> batches = new HashMap<ResourceResolver, List<String>>();
+		for (String src : srcs)
+		{
+			final ResourceResolver resolver = getResolverForUrl(src);
+			if (resolver != null && resolver.isBatching())
+			{
+				List<String> batch = batches.get(resolver);
+				if (batch == null)
+				{
+					batch = new ArrayList<String>();
+					batches.put(resolver, batch);
+				}
+				batch.add(src);
+			}
+		}
+		for (Map.Entry<ResourceResolver, List<String>> batch : batches.entrySet())
+		{
+			if (css)
+			{
+				batch.getKey().resolveForCss(batch.getValue());
+			}
+			else
+			{
+				batch.getKey().resolve(batch.getValue());
+			}
+		}
 	}
 
 	@Nullable
 	ResourceResolver getResolverForUrl(@Nullable String src)
 	{
+		ResourceResolver match = null;
 		if (src != null)
 		{
-			for (Entry<String, ResourceResolver> entry : resolvers.entrySet())
+			final Snapshot current = snapshot;
+			final int end = Math.min(src.length(), current.longestPrefix);
+			for (int i = 1; i < end; i++)
 			{
-				if (src.startsWith(entry.getKey()))
+				if (src.charAt(i) == '/' && src.charAt(i - 1) == ':')
 				{
-					return entry.getValue();
+					final ResourceResolver candidate = current.resolvers.get(src.substring(0, i + 1));
+					if (candidate != null)
+					{
+						match = candidate;
+					}
 				}
 			}
 		}
-		return null;
+		return match;
+	}
+
+	private static final class Snapshot
+	{
+		@Nonnull
+		private final Map<String, ResourceResolver> resolvers;
+
+		private final int longestPrefix;
+
+		private final boolean batching;
+
+		Snapshot(@Nonnull Map<String, ResourceResolver> resolvers)
+		{
+			this.resolvers = resolvers;
+			int longest = 0;
+			boolean anyBatching = false;
+			for (ResourceResolver resolver : resolvers.values())
+			{
+				longest = Math.max(longest, resolver.getUrlPrefix().length());
+				anyBatching |= resolver.isBatching();
+			}
+			this.longestPrefix = longest;
+			this.batching = anyBatching;
+		}
 	}
 }
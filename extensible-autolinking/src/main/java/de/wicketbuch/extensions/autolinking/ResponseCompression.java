@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
+
+/**
+ * Settings and helpers for sending compressed responses, so that the servlet container does not have to compress the
+ * same processed stylesheet or static file again for every request.
+ * <p>
+ * Processed stylesheets are gzipped once and kept compressed: <code>ctx:/</code> stylesheets along with their cached
+ * processed bytes, classpath stylesheets in a cache keyed by a digest of their processed bytes. Brotli is not
+ * produced, since there is no encoder in the JDK, but precompressed <code>.br</code> files are served, see
+ * {@link #setPrecompressedFiles(boolean)}.
+ */
+class ResponseCompression
+{
+	static final String GZIP = "gzip";
+
+	static final String BROTLI = "br";
+
+	/**
+	 * Number of gzipped classpath stylesheets kept.
+	 */
+	static final int GZIP_CACHE_SIZE = 256;
+
+	private volatile boolean gzipCss = false;
+
+	private volatile boolean precompressedFiles = false;
+
+	@Nonnull
+	private final LruCache<String, byte[]> gzipped = new LruCache<String, byte[]>(GZIP_CACHE_SIZE);
+
+	boolean isGzipCss()
+	{
+		return gzipCss;
+	}
+
+	/**
+	 * @param gzipCss whether processed stylesheets are sent gzipped to clients accepting that
+	 */
+	void setGzipCss(boolean gzipCss)
+	{
+		this.gzipCss = gzipCss;
+		if (!gzipCss)
+		{
+			gzipped.clear();
+		}
+	}
+
+	boolean isPrecompressedFiles()
+	{
+		return precompressedFiles;
+	}
+
+	/**
+	 * @param precompressedFiles whether <code>.br</code> and <code>.gz</code> files next to <code>ctx:/</code> files
+	 *                           are sent instead of them to clients accepting that
+	 */
+	void setPrecompressedFiles(boolean precompressedFiles)
+	{
+		this.precompressedFiles = precompressedFiles;
+	}
+
+	/**
+	 * @param bytes a processed classpath stylesheet
+	 * @return the gzipped stylesheet, compressed only once for the same content.
+	 */
+	@Nonnull
+	byte[] gzipCached(@Nonnull byte[] bytes)
+	{
+		final String digest = Digests.md5(bytes);
+		byte[] compressed = gzipped.get(digest);
+		if (compressed == null)
+		{
+			compressed = gzip(bytes);
+			gzipped.put(digest, compressed);
+		}
+		return compressed;
+	}
+
+	@Nonnull
+	static byte[] gzip(@Nonnull byte[] bytes)
+	{
+		try
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+			final GZIPOutputStream gzip = new GZIPOutputStream(out);
+			gzip.write(bytes);
+			gzip.close();
+			return out.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// cannot happen in memory
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param request a request
+	 * @param coding  a content coding like <code>gzip</code>
+	 * @return whether the request's <code>Accept-Encoding</code> header allows the coding.
+	 */
+	static boolean accepts(@Nonnull Request request, @Nonnull String coding)
+	{
+		if (!(request instanceof WebRequest))
+		{
+			return false;
+		}
+		final String header = ((WebRequest) request).getHeader("Accept-Encoding");
+		if (header == null)
+		{
+			return false;
+		}
+		Boolean wildcard = null;
+		for (String element : header.split(","))
+		{
+			final int semicolon = element.indexOf(';');
+			final String name = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+			final boolean allowed = semicolon < 0 || !isZeroQuality(element.substring(semicolon + 1));
+			if (name.equalsIgnoreCase(coding))
+			{
+				return allowed;
+			}
+			if (name.equals("*"))
+			{
+				wildcard = allowed;
+			}
+		}
+		return wildcard != null && wildcard;
+	}
+
+	private static boolean isZeroQuality(@Nonnull String parameters)
+	{
+		for (String parameter : parameters.split(";"))
+		{
+			final String trimmed = parameter.trim();
+			if (trimmed.startsWith("q="))
+			{
+				try
+				{
+					return Float.parseFloat(trimmed.substring(2)) <= 0;
+				}
+				catch (NumberFormatException e)
+				{
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tell caches that the response depends on the <code>Accept-Encoding</code> header.
+	 */
+	static void addVary(@Nullable Response response)
+	{
+		if (response instanceof WebResponse)
+		{
+			((WebResponse) response).addHeader("Vary", "Accept-Encoding");
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that is spread over several cells, so that threads incrementing it concurrently rarely touch the same
+ * cache line. Reading the sum is comparatively expensive and not atomic with respect to concurrent updates, which is
+ * fine for metrics.
+ */
+final class StripedCounter
+{
+	/**
+	 * Distance between two cells in longs, so that each cell sits on its own 64 byte cache line.
+	 */
+	private static final int PADDING = 8;
+
+	private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	private static int stripes(int processors)
+	{
+		int stripes = 1;
+		while (stripes < processors * 2 && stripes < 64)
+		{
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+	void increment()
+	{
+		add(1);
+	}
+
+	void add(long value)
+	{
+		cells.getAndAdd(cell(), value);
+	}
+
+	long sum()
+	{
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++)
+		{
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	void reset()
+	{
+		for (int i = 0; i < STRIPES; i++)
+		{
+			cells.set(i * PADDING, 0);
+		}
+	}
+
+	private static int cell()
+	{
+		int hash = (int) Thread.currentThread().getId();
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return (hash & (STRIPES - 1)) * PADDING;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.wicket.markup.ComponentTag;
+
+/**
+ * Immutable lookup of the attributes to be autolinked per tag name. Most tags in a template are not autolinked at all,
+ * so before looking a tag name up in the map, it is checked against the lengths and first characters of the
+ * configured names. That rejects tags like <code>div</code>, <code>span</code> or <code>li</code> without computing
+ * the hash code of their name.
+ */
+final class TagMatcher
+{
+	static final TagMatcher EMPTY = new TagMatcher(new HashMap<String, String[]>());
+
+	@Nonnull
+	private final Map<String, String[]> attributesByTag;
+
+	/**
+	 * Bit <code>n</code> is set if there is a tag name of length <code>n</code>, bit 63 for all longer names.
+	 */
+	private final long lengths;
+
+	/**
+	 * Bit <code>c - 64</code> is set if there is a tag name starting with the ASCII character <code>c</code> from
+	 * <code>@</code> up to DEL, bit 0 as well for all other first characters.
+	 */
+	private final long firstChars;
+
+	private TagMatcher(@Nonnull Map<String, String[]> attributesByTag)
+	{
+		this.attributesByTag = attributesByTag;
+		long lengths = 0;
+		long firstChars = 0;
+		for (String tagName : attributesByTag.keySet())
+		{
+			lengths |= lengthBit(tagName);
+			firstChars |= firstCharBit(tagName);
+		}
+		this.lengths = lengths;
+		this.firstChars = firstChars;
+	}
+
+	/**
+	 * @param tagName        the tag name
+	 * @param attributeNames its attributes to be autolinked, in order of preference
+	 * @return a new matcher with the given mapping added or replaced.
+	 */
+	@Nonnull
+	TagMatcher with(@Nonnull String tagName, @Nonnull String... attributeNames)
+	{
+		final Map<String, String[]> copy = new HashMap<String, String[]>(attributesByTag);
+		copy.put(tagName, attributeNames.clone());
+		return new TagMatcher(copy);
+	}
+
+	/**
+	 * @param tagName a tag name
+	 * @return the attributes to be autolinked in tags of this name, in order of preference, or <code>null</code> if
+	 * there are none. Must not be modified.
+	 */
+	@Nullable
+	String[] getAttributes(@Nonnull String tagName)
+	{
+		if ((lengths & lengthBit(tagName)) == 0 || (firstChars & firstCharBit(tagName)) == 0)
+		{
+			return null;
+		}
+		return attributesByTag.get(tagName);
+	}
+
+	/**
+	 * @param tag an opening or empty tag
+	 * @return the name of the first attribute of the tag that is to be autolinked, or <code>null</code> if there is
+	 * none.
+	 */
+	@Nullable
+	String getAutolinkAttribute(@Nonnull ComponentTag tag)
+	{
+		final String[] attributeNames = getAttributes(tag.getName());
+		if (attributeNames != null)
+		{
+			for (String attributeName : attributeNames)
+			{
+				if (tag.getAttribute(attributeName) != null)
+				{
+					return attributeName;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static long lengthBit(@Nonnull String tagName)
+	{
+		return 1L << Math.min(tagName.length(), 63);
+	}
+
+	private static long firstCharBit(@Nonnull String tagName)
+	{
+		if (tagName.isEmpty())
+		{
+			return 1L;
+		}
+		final char c = tagName.charAt(0);
+		// covers all ASCII letters
+		return c >= 64 && c < 128 ? 1L << (c - 64) : 1L;
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.apache.wicket.markup.parser.filter.WicketLinkTagHandler.AUTOLINK_ID;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.IMarkupFragment;
+import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupParser;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.core.util.resource.UrlResourceStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the caches of an {@link ExtensibleAutolinker} right after the application has been initialized, before it
+ * serves its first request. First, the markup of the configured classes is parsed and every autolinked URL in it is
+ * resolved. Then every stylesheet found in that markup or configured explicitly is requested once through the
+ * application, just like a browser would, so that it is processed and cached. Both steps run in parallel on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Warm-up is best effort: failures are logged, but do not keep the application from starting.
+ */
+class WarmUp implements IApplicationListener
+{
+	private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+	@Nonnull
+	private final ExtensibleAutolinker autolinker;
+
+	private final List<Class<?>> markupClasses = new CopyOnWriteArrayList<Class<?>>();
+
+	private final List<String> stylesheets = new CopyOnWriteArrayList<String>();
+
+	/**
+	 * Parses with the autolinker's markup filter, so that the same tags are found as for rendering, but with
+	 * component-free rendering and parse-time resolution off. Both would replace the autolinked values, while warm-up
+	 * needs to see them as they are in the template.
+	 */
+	private final MarkupFactory markupFactory = new MarkupFactory()
+	{
+		@Override
+		public MarkupParser newMarkupParser(MarkupResourceStream resource)
+		{
+			final MarkupParser parser = super.newMarkupParser(resource);
+			parser.add(autolinker.newMarkupFilter(resource, false, false));
+			return parser;
+		}
+	};
+
+	WarmUp(@Nonnull ExtensibleAutolinker autolinker)
+	{
+		this.autolinker = autolinker;
+	}
+
+	void addMarkupClasses(@Nonnull Class<?>... classes)
+	{
+		Collections.addAll(markupClasses, classes);
+	}
+
+	void addStylesheets(@Nonnull String... urls)
+	{
+		for (String url : urls)
+		{
+			if (autolinker.getResolvers().getResolverForUrl(url) == null)
+			{
+				throw new IllegalArgumentException("not a prefixed URL: " + url);
+			}
+		}
+		Collections.addAll(stylesheets, urls);
+	}
+
+	@Override
+	public void onAfterInitialized(Application application)
+	{
+		if (!markupClasses.isEmpty() || !stylesheets.isEmpty())
+		{
+			run((WebApplication) application);
+		}
+	}
+
+	@Override
+	public void onBeforeDestroyed(Application application)
+	{
+	}
+
+	private void run(@Nonnull final WebApplication application)
+	{
+		final long start = System.currentTimeMillis();
+		final Set<ResourceReference> stylesheetReferences =
+				Collections.newSetFromMap(new ConcurrentHashMap<ResourceReference, Boolean>());
+		final ForkJoinPool pool = new ForkJoinPool();
+		try
+		{
+			final List<Callable<Void>> markupTasks = new ArrayList<Callable<Void>>();
+			for (final Class<?> markupClass : markupClasses)
+			{
+				markupTasks.add(new WarmUpTask(application, markupClass.getName())
+				{
+					@Override
+					void warmUp() throws Exception
+					{
+						warmUpMarkup(application, markupClass, stylesheetReferences);
+					}
+				});
+			}
+			for (final String stylesheet : stylesheets)
+			{
+				markupTasks.add(new WarmUpTask(application, stylesheet)
+				{
+					@Override
+					void warmUp()
+					{
+						stylesheetReferences.add(
+								autolinker.getResolvers().getResolverForUrl(stylesheet).resolveForCss(stylesheet));
+					}
+				});
+			}
+			awaitAll(pool.invokeAll(markupTasks));
+
+			final List<Callable<Void>> stylesheetTasks = new ArrayList<Callable<Void>>();
+			for (final ResourceReference reference : stylesheetReferences)
+			{
+				stylesheetTasks.add(new WarmUpTask(application, reference.toString())
+				{
+					@Override
+					void warmUp()
+					{
+						request(application, reference);
+					}
+				});
+			}
+			awaitAll(pool.invokeAll(stylesheetTasks));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		log.info("Autolinking warm-up of {} classes and {} stylesheets took {} ms", markupClasses.size(),
+				stylesheetReferences.size(), System.currentTimeMillis() - start);
+	}
+
+	private void warmUpMarkup(@Nonnull WebApplication application, @Nonnull Class<?> markupClass,
+	                          @Nonnull Set<ResourceReference> stylesheetReferences) throws Exception
+	{
+		final String className = markupClass.getName();
+		final URL markupUrl = markupClass.getResource(className.substring(className.lastIndexOf('.') + 1) + ".html");
+		if (markupUrl == null)
+		{
+			log.warn("No markup found for {}, skipping its warm-up", className);
+			return;
+		}
+		// markup filters number the tags they mark per request
+		final RequestCycle parsingCycle = newRequestCycle(application, Url.parse(""));
+		ThreadContext.setRequestCycle(parsingCycle);
+		final IMarkupFragment markup;
+		try
+		{
+			markup = markupFactory.newMarkupParser(new MarkupResourceStream(new UrlResourceStream(markupUrl))).parse();
+		}
+		finally
+		{
+			parsingCycle.detach();
+			ThreadContext.setRequestCycle(null);
+		}
+		for (int i = 0; i < markup.size(); i++)
+		{
+			final MarkupElement element = markup.get(i);
+			if (element instanceof ComponentTag && isAutolinked((ComponentTag) element))
+			{
+				final ResourceReference stylesheet = autolinker.warmUp(markupClass, (ComponentTag) element);
+				if (stylesheet != null)
+				{
+					stylesheetReferences.add(stylesheet);
+				}
+			}
+		}
+	}
+
+	private static boolean isAutolinked(@Nonnull ComponentTag tag)
+	{
+		return !tag.isClose() && tag.getId() != null && tag.getId().startsWith(AUTOLINK_ID);
+	}
+
+	/**
+	 * Request the resource through the application, so that it is processed and cached in the same way as for a
+	 * browser.
+	 */
+	private static void request(@Nonnull WebApplication application, @Nonnull ResourceReference reference)
+	{
+		final RequestCycle mappingCycle = newRequestCycle(application, Url.parse(""));
+		ThreadContext.setRequestCycle(mappingCycle);
+		final Url url = mappingCycle.mapUrlFor(new ResourceReferenceRequestHandler(reference));
+		mappingCycle.detach();
+
+		newRequestCycle(application, url).processRequestAndDetach();
+	}
+
+	@Nonnull
+	private static RequestCycle newRequestCycle(@Nonnull WebApplication application, @Nonnull Url url)
+	{
+		final String contextPath = application.getServletContext().getContextPath();
+		final String filterPath = application.getWicketFilter().getFilterPath();
+		return application.createRequestCycle(new MockWebRequest(url, contextPath, filterPath, ""),
+				new MockWebResponse());
+	}
+
+	private static void awaitAll(@Nonnull List<Future<Void>> futures)
+	{
+		for (Future<Void> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new WicketRuntimeException("autolinking warm-up was interrupted", e);
+			}
+			catch (ExecutionException e)
+			{
+				// WarmUpTask logs its own failures
+			}
+		}
+	}
+
+	/**
+	 * Runs on a pool thread, with the application attached to it.
+	 */
+	private abstract static class WarmUpTask implements Callable<Void>
+	{
+		@Nonnull
+		private final Application application;
+		@Nonnull
+		private final String description;
+
+		WarmUpTask(@Nonnull Application application, @Nonnull String description)
+		{
+			this.application = application;
+			this.description = description;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			ThreadContext.setApplication(application);
+			try
+			{
+				warmUp();
+				return null;
+			}
+			catch (Exception e)
+			{
+				log.warn("Autolinking warm-up failed for " + description, e);
+				throw e;
+			}
+			finally
+			{
+				ThreadContext.detach();
+			}
+		}
+
+		abstract void warmUp() throws Exception;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Locale;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.annotation.Nullable;
+
+import de.wicketbuch.extensions.autolinking.res.Scope;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.core.util.resource.UrlResourceStream;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClasspathIndexTest
+{
+	private final ClasspathIndex index = ClasspathIndex.build(ClasspathIndexTest.class.getClassLoader(),
+			"de/wicketbuch/extensions/autolinking/res", "/org/junit/runner/");
+
+	@Nullable
+	private WicketTester tester;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void resourcesInDirectoriesAreIndexed()
+	{
+		final String path = "de/wicketbuch/extensions/autolinking/res/test.css";
+		assertThat(index.covers(path), is(true));
+		final UrlResourceStream stream = index.get(path);
+		assertThat(stream, notNullValue());
+		assertThat(stream.length().bytes(), greaterThan(0L));
+	}
+
+	@Test
+	public void resourcesInJarsAreIndexed()
+	{
+		assertThat(index.covers("org/junit/runner/JUnitCore.class"), is(true));
+		assertThat(index.get("org/junit/runner/JUnitCore.class"), notNullValue());
+	}
+
+	@Test
+	public void resourcesInJarsWithoutDirectoryEntriesAreIndexed() throws IOException
+	{
+		final File file = folder.newFile("flat.jar");
+		final JarOutputStream jar = new JarOutputStream(new FileOutputStream(file));
+		try
+		{
+			jar.putNextEntry(new JarEntry("com/example/flat/test.css"));
+			jar.write(".flat {}".getBytes("UTF-8"));
+			jar.closeEntry();
+		}
+		finally
+		{
+			jar.close();
+		}
+		final ClasspathIndex flatIndex =
+				ClasspathIndex.build(new URLClassLoader(new URL[] {file.toURI().toURL()}, null), "com/example/flat");
+		assertThat(flatIndex.covers("com/example/flat/test.css"), is(true));
+		assertThat(flatIndex.get("com/example/flat/test.css"), notNullValue());
+	}
+
+	@Test
+	public void missingResourcesAreNotFound()
+	{
+		assertThat(index.get("de/wicketbuch/extensions/autolinking/res/missing.css"), nullValue());
+		assertThat(index.covers("de/wicketbuch/extensions/autolinking/test.png"), is(false));
+	}
+
+	@Test
+	public void installedIndexAnswersPackageResourceLookups()
+	{
+		startTester();
+		assertThat(tester.getApplication().getResourceSettings().getResourceStreamLocator(),
+				instanceOf(IndexedResourceStreamLocator.class));
+
+		tester.startResourceReference(new PackageResourceReference(Scope.class, "indexed/variant.css"));
+		assertThat(tester.getLastResponseAsString(), containsString("color: black"));
+	}
+
+	@Test
+	public void installedIndexFindsLocaleAndStyleVariants()
+	{
+		startTester();
+		tester.startResourceReference(
+				new PackageResourceReference(Scope.class, "indexed/variant.css", Locale.GERMAN, null, null));
+		assertThat(tester.getLastResponseAsString(), containsString("color: red"));
+
+		tester.startResourceReference(
+				new PackageResourceReference(Scope.class, "indexed/variant.css", null, "dark", null));
+		assertThat(tester.getLastResponseAsString(), containsString("color: white"));
+	}
+
+	@Test
+	public void installedIndexDoesNotFindMissingResources()
+	{
+		startTester();
+		tester.startResourceReference(new PackageResourceReference(Scope.class, "indexed/missing.css"));
+		assertThat(tester.getLastResponse().getStatus(), is(404));
+	}
+
+	private void startTester()
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+
+			@Override
+			protected void init()
+			{
+				super.init();
+				ClasspathIndex.install(this, "de/wicketbuch/extensions/autolinking/res/indexed");
+			}
+		});
+	}
+
+	@After
+	public void destroyTester()
+	{
+		if (tester != null)
+		{
+			tester.destroy();
+			tester = null;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import javax.annotation.Nullable;
+
+import de.wicketbuch.extensions.autolinking.ExtensibleAutolinkerTest.ContextRootAutolinkingPage;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.core.request.handler.PageProvider;
+import org.apache.wicket.core.util.string.ComponentRenderer;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ComponentFreeRenderingTest
+{
+	@Nullable
+	private static WicketTester tester;
+
+	@Test
+	public void markersAreReplacedWithUrls()
+	{
+		tester.startPage(ContextRootAutolinkingPage.class);
+		tester.assertContains("src=\"../resource/org.apache.wicket.Application/res/test.png\"");
+		tester.assertContains("href=\"../resource/org.apache.wicket.Application/ctx:/res/test.css\"");
+		assertThat(tester.getLastResponseAsString(),
+				not(containsString(ExtensibleAutolinker.EXTENSIBLE_AUTOLINK_PREFIX)));
+	}
+
+	@Test
+	public void markersAreReplacedInAjaxResponses()
+	{
+		tester.startPage(AjaxUpdatePage.class);
+		tester.clickLink("update", true);
+		tester.assertComponentOnAjaxResponse("container");
+		tester.assertContains("src=\"../resource/org.apache.wicket.Application/res/test.png\"");
+		assertThat(tester.getLastResponseAsString(),
+				not(containsString(ExtensibleAutolinker.EXTENSIBLE_AUTOLINK_PREFIX)));
+	}
+
+	@Test
+	public void markersAreNotReplacedByComponentRenderer()
+	{
+		// response filters do not run here, see ExtensibleAutolinker#setComponentFreeRendering
+		final CharSequence markup = ComponentRenderer.renderPage(new PageProvider(ContextRootAutolinkingPage.class));
+		assertThat(markup.toString(), containsString(ExtensibleAutolinker.EXTENSIBLE_AUTOLINK_PREFIX));
+	}
+
+	@Test
+	public void identicalValuesShareAMarker()
+	{
+		final AutolinkMarkers markers = new AutolinkMarkers(ExtensibleAutolinker.get(tester.getApplication()));
+		final String marker = markers.marker("ctx:/res/test.png", false, true);
+		assertThat(markers.marker("ctx:/res/test.png", false, true), is(marker));
+		assertThat(markers.marker("ctx:/res/test.png", false, false), is(not(marker)));
+	}
+
+	public static class AjaxUpdatePage extends WebPage
+	{
+		public AjaxUpdatePage()
+		{
+			final WebMarkupContainer container = new WebMarkupContainer("container");
+			add(container.setOutputMarkupId(true));
+			add(new AjaxLink<Void>("update")
+			{
+				@Override
+				public void onClick(AjaxRequestTarget target)
+				{
+					target.add(container);
+				}
+			});
+		}
+	}
+
+	@BeforeClass
+	public static void setupTester()
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+				ExtensibleAutolinker.configure(this).setComponentFreeRendering(true);
+			}
+		}, new File("src/test/webapp").getAbsolutePath());
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CompressedCssTest
+{
+	private static final String CONTEXT_CSS = "ctx:/res/test.css";
+
+	private static final String CONTEXT_CSS_URL =
+			"/context/servlet/wicket/resource/org.apache.wicket.Application/ctx:/res/test.css";
+
+	private static final String CLASSPATH_CSS = "cp:/de/wicketbuch/extensions/autolinking/res/test.css";
+
+	private static final String CLASSPATH_CSS_URL =
+			"/context/servlet/wicket/resource/_cp._/::/de/wicketbuch/extensions/autolinking/res/test.css";
+
+	@Nullable
+	private static WicketTester tester;
+
+	@Test
+	public void contextCssIsGzippedForClientsAcceptingIt() throws IOException
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "gzip, deflate");
+		tester.executeUrl(CONTEXT_CSS_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is("gzip"));
+		assertThat(tester.getLastResponse().getHeader("Vary"), is("Accept-Encoding"));
+		assertThat(gunzip(tester.getLastResponse().getBinaryContent()), containsString(".ctxroot"));
+	}
+
+	@Test
+	public void contextCssIsPlainForOtherClients()
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "gzip;q=0, identity");
+		tester.executeUrl(CONTEXT_CSS_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is(nullValue()));
+		assertThat(tester.getLastResponse().getDocument(), containsString(".ctxroot"));
+	}
+
+	@Test
+	public void classpathCssIsGzippedForClientsAcceptingIt() throws IOException
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "*");
+		tester.executeUrl(CLASSPATH_CSS_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is("gzip"));
+		assertThat(gunzip(tester.getLastResponse().getBinaryContent()), containsString(".ctxroot"));
+	}
+
+	private static String gunzip(byte[] bytes) throws IOException
+	{
+		return new String(IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes))), "UTF-8");
+	}
+
+	@BeforeClass
+	public static void setupTester()
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+				ExtensibleAutolinker.configure(this).setGzipCss(true);
+			}
+		}, new File("src/test/webapp").getAbsolutePath());
+		// registers the references, so that their URLs can be requested
+		final ResourceResolvers resolvers = ExtensibleAutolinker.get(tester.getApplication()).getResolvers();
+		resolvers.getResolverForUrl(CONTEXT_CSS).resolveForCss(CONTEXT_CSS);
+		resolvers.getResolverForUrl(CLASSPATH_CSS).resolveForCss(CLASSPATH_CSS);
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
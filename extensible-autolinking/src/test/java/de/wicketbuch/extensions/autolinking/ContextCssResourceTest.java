@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.annotation.Nullable;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContextCssResourceTest
+{
+	private static final String CSS = "ctx:/res/site.css";
+
+	private static final String CSS_URL =
+			"/context/servlet/wicket/resource/org.apache.wicket.Application/ctx:/res/site.css";
+
+	@ClassRule
+	public static final TemporaryFolder webapp = new TemporaryFolder();
+
+	@Nullable
+	private static WicketTester tester;
+
+	@Nullable
+	private static File stylesheet;
+
+	@Before
+	public void writeStylesheet() throws IOException
+	{
+		write(".first { background: url(\"ctx:/res/test.png\"); }", 1000000000000L);
+	}
+
+	@Test
+	public void responseHasContentLengthOfProcessedStylesheet()
+	{
+		tester.executeUrl(CSS_URL);
+		final byte[] content = tester.getLastResponse().getBinaryContent();
+		assertThat(new String(content), containsString("../../res/test.png"));
+		assertThat(tester.getLastResponse().getHeader("Content-Length"), is(String.valueOf(content.length)));
+		assertThat(tester.getLastResponse().getHeader("Last-Modified"), is(notNullValue()));
+	}
+
+	@Test
+	public void matchingETagIsNotModified()
+	{
+		tester.executeUrl(CSS_URL);
+		final String etag = tester.getLastResponse().getHeader("ETag");
+		tester.getRequest().addHeader("If-None-Match", etag);
+		tester.executeUrl(CSS_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(304));
+		assertThat(tester.getLastResponse().getBinaryContent().length, is(0));
+	}
+
+	@Test
+	public void weakOrListedETagIsNotModified()
+	{
+		tester.executeUrl(CSS_URL);
+		final String etag = tester.getLastResponse().getHeader("ETag");
+		tester.getRequest().addHeader("If-None-Match", "\"other\", W/" + etag);
+		tester.executeUrl(CSS_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(304));
+
+		tester.getRequest().addHeader("If-None-Match", "*");
+		tester.executeUrl(CSS_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(304));
+
+		tester.getRequest().addHeader("If-None-Match", "\"other\", W/\"another\"");
+		tester.executeUrl(CSS_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(200));
+	}
+
+	@Test
+	public void unmodifiedStylesheetIsServedFromCache() throws IOException
+	{
+		tester.executeUrl(CSS_URL);
+		write(".second { color: red; }", 1000000000000L);
+		tester.executeUrl(CSS_URL);
+		assertThat(tester.getLastResponse().getDocument(), containsString(".first"));
+	}
+
+	@Test
+	public void modifiedStylesheetIsProcessedAgain() throws IOException
+	{
+		tester.executeUrl(CSS_URL);
+		final String etag = tester.getLastResponse().getHeader("ETag");
+		write(".second { color: red; }", 1000000060000L);
+		tester.executeUrl(CSS_URL);
+		assertThat(tester.getLastResponse().getDocument(), containsString(".second"));
+		assertThat(tester.getLastResponse().getHeader("ETag"), is(not(etag)));
+	}
+
+	private static void write(String css, long lastModified) throws IOException
+	{
+		Files.write(stylesheet.toPath(), css.getBytes("UTF-8"));
+		assertThat(stylesheet.setLastModified(lastModified), is(true));
+	}
+
+	@BeforeClass
+	public static void setupTester() throws IOException
+	{
+		stylesheet = new File(webapp.newFolder("res"), "site.css");
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+				ExtensibleAutolinker.configure(this).setCssCacheSize(ExtensibleAutolinker.DEFAULT_CSS_CACHE_SIZE);
+			}
+		}, webapp.getRoot().getAbsolutePath());
+		// registers the reference, so that its URL can be requested
+		ExtensibleAutolinker.get(tester.getApplication()).getResolvers().getResolverForUrl(CSS).resolveForCss(CSS);
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import de.wicketbuch.extensions.autolinking.ContextFileResourceReference.ContextFileResource;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Time;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ContextFileResourceTest
+{
+	private static final String IMAGE = "ctx:/res/beer.gif";
+
+	private static final String IMAGE_URL = "/context/servlet/wicket/resource/org.apache.wicket.Application/res/beer.gif";
+
+	@Nullable
+	private static WicketTester tester;
+
+	@Test
+	public void wholeFileIsServed()
+	{
+		tester.executeUrl(IMAGE_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(200));
+		assertThat((long) tester.getLastResponse().getBinaryContent().length, is(imageLength()));
+		assertThat(tester.getLastResponse().getHeader("Accept-Ranges"), is("bytes"));
+	}
+
+	@Test
+	public void rangeIsServed()
+	{
+		tester.getRequest().addHeader("Range", "bytes=10-19");
+		tester.executeUrl(IMAGE_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(206));
+		assertThat(tester.getLastResponse().getBinaryContent().length, is(10));
+		assertThat(tester.getLastResponse().getHeader("Content-Range"), is("bytes 10-19/" + imageLength()));
+	}
+
+	@Test
+	public void rangeBeyondEndIsNotSatisfiable()
+	{
+		tester.getRequest().addHeader("Range", "bytes=" + imageLength() + "-");
+		tester.executeUrl(IMAGE_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(416));
+	}
+
+	@Test
+	public void rangeIsServedIfUnchanged()
+	{
+		tester.getRequest().addHeader("Range", "bytes=10-19");
+		tester.getRequest().addHeader("If-Range", Time.millis(imageFile().lastModified()).toRfc1123TimestampString());
+		tester.executeUrl(IMAGE_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(206));
+		assertThat(tester.getLastResponse().getBinaryContent().length, is(10));
+	}
+
+	@Test
+	public void wholeFileIsServedIfChanged()
+	{
+		tester.getRequest().addHeader("Range", "bytes=10-19");
+		tester.getRequest().addHeader("If-Range", Time.millis(0).toRfc1123TimestampString());
+		tester.executeUrl(IMAGE_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(200));
+		assertThat((long) tester.getLastResponse().getBinaryContent().length, is(imageLength()));
+	}
+
+	@Test
+	public void fileIsHandedToContainerThatCanSendIt() throws IOException
+	{
+		tester.getRequest().setAttribute(ContextFileResource.SENDFILE_SUPPORT, Boolean.TRUE);
+		tester.getRequest().addHeader("Range", "bytes=10-19");
+		tester.executeUrl(IMAGE_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(206));
+		assertThat(tester.getLastResponse().getBinaryContent().length, is(0));
+		assertThat(tester.getLastResponse().getHeader("Content-Length"), is("10"));
+		assertThat(tester.getLastRequest().getAttribute(ContextFileResource.SENDFILE_FILENAME),
+				is((Object) imageFile().getCanonicalPath()));
+		assertThat(tester.getLastRequest().getAttribute(ContextFileResource.SENDFILE_START), is((Object) 10L));
+		assertThat(tester.getLastRequest().getAttribute(ContextFileResource.SENDFILE_END), is((Object) 20L));
+	}
+
+	private static File imageFile()
+	{
+		return new File("src/test/webapp/res/beer.gif");
+	}
+
+	private static long imageLength()
+	{
+		return imageFile().length();
+	}
+
+	@BeforeClass
+	public static void setupTester()
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+				ExtensibleAutolinker.configure(this).setContextFileTransferThreshold(0);
+			}
+		}, new File("src/test/webapp").getAbsolutePath());
+		// registers the reference, so that its URL can be requested
+		ExtensibleAutolinker.get(tester.getApplication()).getResolvers().getResolverForUrl(IMAGE).resolve(IMAGE);
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
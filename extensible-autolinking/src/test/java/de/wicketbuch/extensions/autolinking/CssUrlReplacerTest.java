@@ -16,12 +16,29 @@
  */
 package de.wicketbuch.extensions.autolinking;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
 import org.apache.wicket.mock.MockApplication;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
 import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
 import org.apache.wicket.request.resource.caching.ResourceUrl;
@@ -181,6 +198,29 @@ public class CssUrlReplacerTest
 			containsString(".class {background-image: url(data:image/gif;base64,R0lGODlh1wATAXAAACH5BAEAAP8ALAAAAADXA"));
 	}
 
+	@Test
+	public void largeBase64EncodedImageIsLinked()
+	{
+		String input = ".class {background-image: url('Beer.gif?embedBase64');}";
+		Class<?> scope = CssUrlReplacerTest.class;
+		String cssRelativePath = "some.css";
+		ExtensibleAutolinker autolinker = ExtensibleAutolinker.configure(WebApplication.get()).setMaxEmbeddedImageSize(16);
+		String processed = autolinker.cssProcessor.process(input, scope, cssRelativePath);
+		assertThat(processed, containsString("CssUrlReplacerTest/Beer.gif" + DECORATION_SUFFIX + "');"));
+	}
+
+	@Test
+	public void smallImageIsInlinedByPolicy()
+	{
+		String input = ".class {background-image: url('Beer.gif');}";
+		Class<?> scope = CssUrlReplacerTest.class;
+		String cssRelativePath = "some.css";
+		ExtensibleAutolinker autolinker = ExtensibleAutolinker.configure(WebApplication.get())
+				.setInliningPolicy(new ImageSizeInliningPolicy(64 * 1024));
+		String processed = autolinker.cssProcessor.process(input, scope, cssRelativePath);
+		assertThat(processed, containsString(".class {background-image: url(data:image/gif;base64,R0lGODlh1wATAXAAACH5"));
+	}
+
 	@Test
 	public void severalUrls()
 	{
@@ -195,4 +235,144 @@ public class CssUrlReplacerTest
 		assertThat(processed, containsString("CssUrlReplacerTest/res/css/b.img" +
 			DECORATION_SUFFIX + "');"));
 	}
+
+	@Test
+	public void processedCssIsCached()
+	{
+		String input = ".class {background-image: url('some.img');}";
+		Class<?> scope = CssUrlReplacerTest.class;
+		String cssRelativePath = "res/css/some.css";
+		ExtensibleAutolinker autolinker = ExtensibleAutolinker.configure(WebApplication.get()).setCssCacheSize(1);
+
+		String processed = autolinker.cssProcessor.process(input, scope, cssRelativePath);
+		assertThat(autolinker.cssProcessor.process(input, scope, cssRelativePath), is(processed));
+		assertThat(autolinker.getCssCacheStatistics().getHits(), is(1L));
+		assertThat(autolinker.getCssCacheStatistics().getMisses(), is(1L));
+
+		autolinker.cssProcessor.process(input, scope, "res/css/other.css");
+		assertThat(autolinker.getCssCacheStatistics().getEvictions(), is(1L));
+	}
+
+	@Test
+	public void streamedCssEqualsProcessedCss() throws IOException
+	{
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+		{
+			input.append(".class").append(i).append(" {background-image: url('some").append(i % 7)
+					.append(".img');} /* url(comment.png) */\n");
+		}
+		Class<?> scope = CssUrlReplacerTest.class;
+		String cssRelativePath = "res/css/some.css";
+		CssProcessor replacer = newProcessor();
+
+		StringWriter streamed = new StringWriter();
+		replacer.process(new StringReader(input.toString()), streamed, scope, cssRelativePath);
+		assertThat(streamed.toString(), is(replacer.process(input.toString(), scope, cssRelativePath)));
+	}
+
+	@Test
+	public void parallelCssEqualsSequentialCss()
+	{
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+		{
+			input.append(".class").append(i).append(" {background-image: url('some").append(i % 17)
+					.append(".img');}\n");
+		}
+		Class<?> scope = CssUrlReplacerTest.class;
+		String cssRelativePath = "res/css/some.css";
+		CssProcessor replacer = newProcessor();
+		String sequential = replacer.process(input.toString(), scope, cssRelativePath);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			replacer.setExecutor(executor);
+			assertThat(replacer.process(input.toString(), scope, cssRelativePath), is(sequential));
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void repeatedUrlIsResolvedOnce()
+	{
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 10; i++)
+		{
+			input.append(".class").append(i).append(" {background-image: url('ctx:/res/test.png');}\n");
+		}
+		final AtomicInteger resolutions = new AtomicInteger();
+		CssProcessor replacer = newProcessor();
+		replacer.setMetrics(new AutolinkerMetrics()
+		{
+			@Override
+			public void resolved(@Nonnull String prefix, long nanos)
+			{
+				resolutions.incrementAndGet();
+			}
+
+			@Override
+			public void cssProcessed(long nanos, int inputLength, int outputLength)
+			{
+			}
+
+			@Override
+			public void packageResourceMissing(@Nonnull Class<?> scope, @Nonnull String path)
+			{
+			}
+		});
+
+		String processed = replacer.process(input.toString(), null, "some.css");
+		assertThat(resolutions.get(), is(1));
+		assertThat(processed, not(containsString("ctx:/")));
+	}
+
+	@Test
+	public void batchingResolverIsCalledOncePerStylesheet()
+	{
+		final List<Collection<String>> batches = new ArrayList<Collection<String>>();
+		ExtensibleAutolinker autolinker = ExtensibleAutolinker.configure(WebApplication.get());
+		autolinker.addResolver(new ResourceResolver("batch")
+		{
+			@Nonnull
+			@Override
+			protected ResourceReference newReference(@Nonnull String src)
+			{
+				return new PackageResourceReference(CssUrlReplacerTest.class, removePrefix(src));
+			}
+
+			@Nonnull
+			@Override
+			protected ResourceReference newCssReference(@Nonnull String src)
+			{
+				return newReference(src);
+			}
+
+			@Nonnull
+			@Override
+			protected Map<String, ResourceReference> newReferences(@Nonnull Collection<String> srcs)
+			{
+				batches.add(new ArrayList<String>(srcs));
+				return super.newReferences(srcs);
+			}
+
+			@Override
+			protected boolean isBatching()
+			{
+				return true;
+			}
+		});
+
+		String input = ".a {background: url(batch:/a.png);} .b {background: url(batch:/b.png);} " +
+				".c {background: url(batch:/a.png);} .d {background: url(ctx:/d.png);}";
+		String processed = autolinker.cssProcessor.process(input, null, "some.css");
+
+		assertThat(batches.size(), is(1));
+		assertThat(batches.get(0), contains("batch:/a.png", "batch:/b.png"));
+		assertThat(processed, not(containsString("batch:/")));
+	}
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Test;
+
+public class CssUrlScannerTest
+{
+	private static final CssUrlScanner.UrlRewriter REWRITER = new CssUrlScanner.UrlRewriter()
+	{
+		@Nullable
+		@Override
+		public CharSequence rewrite(@Nonnull String url)
+		{
+			if (url.startsWith("keep"))
+			{
+				return null;
+			}
+			if (url.equals("embed.png"))
+			{
+				return "data:image/png;base64,AAAA";
+			}
+			return "rewritten/" + url;
+		}
+	};
+
+	@Test
+	public void unquotedAndQuotedUrls()
+	{
+		assertScanned("a{b:url(x.png)}", "a{b:url('rewritten/x.png')}");
+		assertScanned("a{b:URL( \"x y.png\" )}", "a{b:url('rewritten/x y.png')}");
+		assertScanned("a{b:url('it\\'s.png')}", "a{b:url('rewritten/it\\'s.png')}");
+		assertScanned("a{b:url(a\\)b.png)}", "a{b:url('rewritten/a\\)b.png')}");
+	}
+
+	@Test
+	public void embeddedUrlsAreNotQuoted()
+	{
+		assertScanned("a{b:url('embed.png')}", "a{b:url(data:image/png;base64,AAAA)}");
+	}
+
+	@Test
+	public void urlsKeptByRewriterAreCopiedUnchanged()
+	{
+		assertScanned("a{b:url(\"keep.png\")}", "a{b:url(\"keep.png\")}");
+	}
+
+	@Test
+	public void commentsAndStringsAreNotRewritten()
+	{
+		assertScanned("/* url(x.png) */a{}", "/* url(x.png) */a{}");
+		assertScanned("a{content:\"url(x.png)\"}", "a{content:\"url(x.png)\"}");
+		assertScanned("a{b:myurl(x.png)}", "a{b:myurl(x.png)}");
+	}
+
+	@Test
+	public void imports()
+	{
+		assertScanned("@import \"x.css\";", "@import \"rewritten/x.css\";");
+		assertScanned("@import url(x.css);", "@import url('rewritten/x.css');");
+	}
+
+	@Test
+	public void imageSets()
+	{
+		assertScanned("a{b:image-set(\"x.png\" 1x, 'y.png' 2x)}",
+				"a{b:image-set(\"rewritten/x.png\" 1x, 'rewritten/y.png' 2x)}");
+		assertScanned("a{b:-webkit-image-set(url(x.png) 1x)}", "a{b:-webkit-image-set(url('rewritten/x.png') 1x)}");
+		assertScanned("a{b:image-set(\"x.png\" type(\"image/png\"))}c{content:\"z\"}",
+				"a{b:image-set(\"rewritten/x.png\" type(\"image/png\"))}c{content:\"z\"}");
+	}
+
+	@Test
+	public void malformedInputIsCopied()
+	{
+		assertScanned("a{b:url(x.png", "a{b:url(x.png");
+		assertScanned("a{b:url()}", "a{b:url()}");
+		assertScanned("a{b:url(x.png)}/* unterminated", "a{b:url('rewritten/x.png')}/* unterminated");
+	}
+
+	private static void assertScanned(String input, String expected)
+	{
+		assertThat(new CssUrlScanner(REWRITER).process(input), is(expected));
+		// the result must not depend on how the input is split up
+		for (int chunkSize = 1; chunkSize < input.length(); chunkSize++)
+		{
+			assertThat("chunk size " + chunkSize, scanInChunks(input, chunkSize), is(expected));
+		}
+	}
+
+	private static String scanInChunks(String input, int chunkSize)
+	{
+		final CssUrlScanner scanner = new CssUrlScanner(REWRITER);
+		final StringBuilder pending = new StringBuilder();
+		final StringBuilder out = new StringBuilder();
+		for (int pos = 0; pos < input.length(); pos += chunkSize)
+		{
+			pending.append(input, pos, Math.min(input.length(), pos + chunkSize));
+			final int consumed =
+					scanner.scan(pending, 0, pending.length(), pos + chunkSize >= input.length(), out);
+			pending.delete(0, consumed);
+		}
+		return out.toString();
+	}
+}
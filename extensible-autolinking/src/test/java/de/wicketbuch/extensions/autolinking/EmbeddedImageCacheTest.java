@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmbeddedImageCacheTest
+{
+	private final PackageResourceReference image = new PackageResourceReference(EmbeddedImageCacheTest.class,
+			"Beer.gif");
+
+	private final EmbeddedImageCache cache =
+			new EmbeddedImageCache(ExtensibleAutolinker.DEFAULT_EMBEDDED_IMAGE_CACHE_SIZE);
+
+	private WicketTester tester;
+
+	@Test
+	public void secondEmbedIsCacheHit() throws Exception
+	{
+		final String dataUri = cache.embed(image);
+		assertThat(dataUri, startsWith("data:image/gif;base64,"));
+		assertThat(cache.embed(image), is(dataUri));
+
+		final CacheStatistics statistics = cache.getStatistics();
+		assertThat(statistics.getMisses(), is(1L));
+		assertThat(statistics.getHits(), is(1L));
+		assertThat(statistics.getSize(), is(1));
+	}
+
+	@Test
+	public void modifiedImageIsEmbeddedAgain() throws Exception
+	{
+		final File imageFile = new File(EmbeddedImageCacheTest.class.getResource("Beer.gif").toURI());
+		final long lastModified = imageFile.lastModified();
+		cache.embed(image);
+		assertThat(imageFile.setLastModified(lastModified + 60000), is(true));
+		try
+		{
+			cache.embed(image);
+		}
+		finally
+		{
+			imageFile.setLastModified(lastModified);
+		}
+
+		final CacheStatistics statistics = cache.getStatistics();
+		assertThat(statistics.getMisses(), is(2L));
+		assertThat(statistics.getHits(), is(0L));
+		assertThat(statistics.getSize(), is(2));
+	}
+
+	@Before
+	public void setupTester()
+	{
+		tester = new WicketTester(new MockApplication());
+	}
+
+	@After
+	public void destroyTester()
+	{
+		tester.destroy();
+	}
+}
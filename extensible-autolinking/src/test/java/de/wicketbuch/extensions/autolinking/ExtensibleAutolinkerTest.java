@@ -16,6 +16,12 @@
  */
 package de.wicketbuch.extensions.autolinking;
 
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
 import javax.annotation.Nullable;
 
 import de.wicketbuch.extensions.autolinking.res.Scope;
@@ -77,6 +83,16 @@ public class ExtensibleAutolinkerTest
 		tester.assertContains(".ctxroot \\{ background: url\\('../../res/test.png'\\); \\}");
 	}
 
+	@Test
+	public void contextRootCssResourceHasETag() throws Exception
+	{
+		tester.startPage(ContextRootAutolinkingPage.class);
+		tester.executeUrl("/context/servlet/wicket/resource/org.apache.wicket.Application/ctx:/res/test.css");
+		final String etag = tester.getLastResponse().getHeader("ETag");
+		assertThat(etag, startsWith("\""));
+		assertThat(etag, endsWith("\""));
+	}
+
 	@Test
 	public void classpathRootAutolinking() throws Exception
 	{
@@ -150,6 +166,36 @@ public class ExtensibleAutolinkerTest
 				"<object data=\"../resource/de.wicketbuch.extensions.autolinking.ExtensibleAutolinkerTest\\$CustomTagsAndAttributesPage/test.png\"/>");
 	}
 
+	@Test
+	public void packageResourceLookupsAreCached()
+	{
+		final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(tester.getApplication());
+		tester.startPage(CustomTagsAndAttributesPage.class);
+		final long hits = autolinker.getPackageResourceCacheStatistics().getHits();
+		tester.startPage(CustomTagsAndAttributesPage.class);
+		assertThat(autolinker.getPackageResourceCacheStatistics().getHits(), greaterThan(hits));
+		tester.assertContains(
+				"<object data=\"../resource/de.wicketbuch.extensions.autolinking.ExtensibleAutolinkerTest\\$CustomTagsAndAttributesPage/test.png\"/>");
+	}
+
+	@Test
+	public void metricsAreReported()
+	{
+		final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(tester.getApplication());
+		final JmxAutolinkerMetrics metrics = new JmxAutolinkerMetrics(autolinker);
+		autolinker.setMetrics(metrics);
+		try
+		{
+			tester.startPage(ContextRootAutolinkingPage.class);
+			assertThat(metrics.getResolutionsByPrefix().get("ctx:/"), is(2L));
+			tester.startPage(CustomTagsAndAttributesPage.class);
+			assertThat(metrics.getPackageResourceMisses(), greaterThan(0L));
+		}
+		finally
+		{
+			autolinker.setMetrics(AutolinkerMetrics.NO_OP);
+		}
+	}
 
 	public static class RegularAutolinkingPage extends WebPage
 	{
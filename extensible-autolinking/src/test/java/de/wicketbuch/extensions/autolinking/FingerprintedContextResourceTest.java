@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
+import org.apache.wicket.request.resource.caching.version.CachingResourceVersion;
+import org.apache.wicket.request.resource.caching.version.MessageDigestResourceVersion;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FingerprintedContextResourceTest
+{
+	private static final Pattern FINGERPRINTED_IMAGE = Pattern.compile("src=\"[^\"]*/(res/beer-ver-[^\"]+\\.gif)\"");
+
+	@Nullable
+	private static WicketTester tester;
+
+	@Test
+	public void fingerprintedResourceIsImmutable()
+	{
+		tester.startPage(ImagePage.class);
+		final Matcher matcher = FINGERPRINTED_IMAGE.matcher(tester.getLastResponseAsString());
+		assertTrue(matcher.find());
+
+		tester.executeUrl("/context/servlet/wicket/resource/org.apache.wicket.Application/" + matcher.group(1));
+		assertThat(tester.getLastResponse().getHeader("Cache-Control"),
+				is(FingerprintedContextResourceReference.IMMUTABLE_CACHE_CONTROL));
+	}
+
+	public static class ImagePage extends WebPage
+	{
+		// no code, just template, see html file
+	}
+
+	@BeforeClass
+	public static void setupTester()
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+
+			@Override
+			protected void init()
+			{
+				super.init();
+				// the tester does not version resource URLs, so use the default strategy for deployment mode
+				getResourceSettings().setCachingStrategy(new FilenameWithVersionResourceCachingStrategy(
+						new CachingResourceVersion(new MessageDigestResourceVersion())));
+				ExtensibleAutolinker.configure(this).setFingerprintContextResources(true);
+			}
+		}, new File("src/test/webapp").getAbsolutePath());
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Locale;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.watch.IModificationWatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackageResourceCacheTest
+{
+	private WicketTester tester;
+
+	@Test
+	public void resourceIsWatchedOnlyOnce()
+	{
+		final PackageResourceCache cache = new PackageResourceCache(16);
+		final IModificationWatcher watcher = tester.getApplication().getResourceSettings().getResourceWatcher(true);
+		final int watchedBefore = watcher.getEntries().size();
+		for (int i = 0; i < 3; i++)
+		{
+			assertThat(cache.get(ExtensibleAutolinkerTest.class, "res/test.css", Locale.ENGLISH, null, null),
+					is(notNullValue()));
+			cache.clear();
+		}
+		assertThat(watcher.getEntries().size(), is(watchedBefore + 1));
+	}
+
+	@Before
+	public void setupTester()
+	{
+		tester = new WicketTester(new MockApplication())
+		{
+			/**
+			 * Without a poll frequency there would be no watcher.
+			 */
+			@Override
+			protected Duration getResourcePollFrequency()
+			{
+				return Duration.ONE_HOUR;
+			}
+		};
+	}
+
+	@After
+	public void destroyTester()
+	{
+		tester.destroy();
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrecompressedContextFileTest
+{
+	private static final String SCRIPT = "ctx:/res/app.js";
+
+	private static final String SCRIPT_URL = "/context/servlet/wicket/resource/org.apache.wicket.Application/res/app.js";
+
+	private static final long LAST_MODIFIED = 1000000000000L;
+
+	private static final byte[] CONTENT = "function app() { return 'uncompressed'; }".getBytes();
+
+	/**
+	 * Not real brotli, the resource only sends the file's bytes.
+	 */
+	private static final byte[] BROTLI = "brotli".getBytes();
+
+	@ClassRule
+	public static final TemporaryFolder webapp = new TemporaryFolder();
+
+	@Nullable
+	private static WicketTester tester;
+
+	@Nullable
+	private static File directory;
+
+	@Before
+	public void writeFiles() throws IOException
+	{
+		write("app.js", CONTENT, LAST_MODIFIED);
+		write("app.js.gz", gzip(CONTENT), LAST_MODIFIED);
+		write("app.js.br", BROTLI, LAST_MODIFIED);
+	}
+
+	@Test
+	public void brotliIsPreferredOverGzip()
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "gzip, deflate, br");
+		tester.executeUrl(SCRIPT_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is("br"));
+		assertThat(tester.getLastResponse().getBinaryContent(), is(BROTLI));
+		assertThat(tester.getLastResponse().getHeader("Content-Length"), is(String.valueOf(BROTLI.length)));
+		assertThat(tester.getLastResponse().getHeader("Vary"), is("Accept-Encoding"));
+	}
+
+	@Test
+	public void gzipIsSentIfBrotliIsNotAccepted() throws IOException
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.executeUrl(SCRIPT_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is("gzip"));
+		assertThat(tester.getLastResponse().getBinaryContent(), is(gzip(CONTENT)));
+		assertThat(tester.getLastResponse().getHeader("Content-Length"), is(String.valueOf(gzip(CONTENT).length)));
+	}
+
+	@Test
+	public void olderSiblingIsIgnored() throws IOException
+	{
+		write("app.js.br", BROTLI, LAST_MODIFIED - 60000);
+		tester.getRequest().addHeader("Accept-Encoding", "gzip, br");
+		tester.executeUrl(SCRIPT_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is("gzip"));
+	}
+
+	@Test
+	public void originalIsSentIfNothingIsAccepted()
+	{
+		tester.executeUrl(SCRIPT_URL);
+		assertThat(tester.getLastResponse().getHeader("Content-Encoding"), is(nullValue()));
+		assertThat(tester.getLastResponse().getBinaryContent(), is(CONTENT));
+		assertThat(tester.getLastResponse().getHeader("Vary"), is("Accept-Encoding"));
+	}
+
+	@Test
+	public void unmodifiedFileIsNotSentAgain()
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "br");
+		// the mock request only keeps the day of date headers
+		tester.getRequest().addDateHeader("If-Modified-Since", LAST_MODIFIED + 2 * 24 * 60 * 60 * 1000L);
+		tester.executeUrl(SCRIPT_URL);
+		assertThat(tester.getLastResponse().getStatus(), is(304));
+		assertThat(tester.getLastResponse().getBinaryContent().length, is(0));
+	}
+
+	private static void write(String name, byte[] content, long lastModified) throws IOException
+	{
+		final File file = new File(directory, name);
+		Files.write(file.toPath(), content);
+		assertThat(file.setLastModified(lastModified), is(true));
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(content);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	@BeforeClass
+	public static void setupTester() throws IOException
+	{
+		directory = webapp.newFolder("res");
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+				ExtensibleAutolinker.configure(this).setServePrecompressedContextFiles(true);
+			}
+		}, webapp.getRoot().getAbsolutePath());
+		// registers the reference, so that its URL can be requested
+		ExtensibleAutolinker.get(tester.getApplication()).getResolvers().getResolverForUrl(SCRIPT).resolve(SCRIPT);
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.hasToString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestUrlMemoTest
+{
+	private final ResourceReference reference = new PackageResourceReference(RequestUrlMemoTest.class, "res/test.png");
+
+	private WicketTester tester;
+
+	@Test
+	public void repeatedReferenceIsMappedOnce()
+	{
+		final RequestCycle requestCycle = tester.getRequestCycle();
+		final CharSequence first = RequestUrlMemo.urlFor(requestCycle, reference);
+		assertThat(RequestUrlMemo.urlFor(requestCycle, reference), is(sameInstance(first)));
+	}
+
+	@Test
+	public void urlIsRenderedAgainForNewBaseUrl()
+	{
+		final RequestCycle requestCycle = tester.getRequestCycle();
+		RequestUrlMemo.urlFor(requestCycle, reference);
+		requestCycle.getUrlRenderer().setBaseUrl(Url.parse("deeper/nested/page"));
+		assertThat(RequestUrlMemo.urlFor(requestCycle, reference),
+				hasToString(requestCycle.urlFor(reference, null).toString()));
+	}
+
+	@Test
+	public void urlIsRenderedAgainForBaseUrlModifiedInPlace()
+	{
+		final RequestCycle requestCycle = tester.getRequestCycle();
+		final Url baseUrl = Url.parse("page");
+		requestCycle.getUrlRenderer().setBaseUrl(baseUrl);
+		final CharSequence first = RequestUrlMemo.urlFor(requestCycle, reference);
+		baseUrl.getSegments().add(0, "deeper");
+		final CharSequence second = RequestUrlMemo.urlFor(requestCycle, reference);
+		assertThat(second, hasToString(requestCycle.urlFor(reference, null).toString()));
+		assertThat(second.toString(), is(not(first.toString())));
+	}
+
+	@Before
+	public void setupTester()
+	{
+		tester = new WicketTester(new MockApplication());
+	}
+
+	@After
+	public void destroyTester()
+	{
+		tester.destroy();
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import javax.annotation.Nullable;
+
+import de.wicketbuch.extensions.autolinking.ExtensibleAutolinkerTest.ContextRootAutolinkingPage;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ResolveAtParseTimeTest
+{
+	@Nullable
+	private static WicketTester tester;
+
+	@Test
+	public void prefixedUrlsAreWrittenIntoMarkup()
+	{
+		tester.startPage(ContextRootAutolinkingPage.class);
+		tester.assertContains("src=\"/context/servlet/wicket/resource/org.apache.wicket.Application/res/test.png\"");
+		tester.assertContains(
+				"href=\"/context/servlet/wicket/resource/org.apache.wicket.Application/ctx:/res/test.css\"");
+	}
+
+	@Test
+	public void resolvedStylesheetIsServed()
+	{
+		tester.startPage(ContextRootAutolinkingPage.class);
+		tester.executeUrl("/context/servlet/wicket/resource/org.apache.wicket.Application/ctx:/res/test.css");
+		tester.assertContains(".ctxroot \\{ background: url\\('../../res/test.png'\\); \\}");
+	}
+
+	@BeforeClass
+	public static void setupTester()
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+				ExtensibleAutolinker.configure(this).setResolveAtParseTime(true);
+			}
+		}, new File("src/test/webapp").getAbsolutePath());
+	}
+
+	@AfterClass
+	public static void destroyTester()
+	{
+		tester.destroy();
+		tester = null;
+	}
+}
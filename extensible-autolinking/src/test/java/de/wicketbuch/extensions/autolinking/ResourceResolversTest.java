@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import de.wicketbuch.extensions.autolinking.res.Scope;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceResolversTest
+{
+	private ResourceResolvers resolvers;
+
+	private ClasspathResolver outer;
+
+	private ClasspathResolver inner;
+
+	@Before
+	public void setUp()
+	{
+		resolvers = new ResourceResolvers();
+		outer = new ClasspathResolver(Scope.class, "img", new ResponseCompression());
+		inner = new ClasspathResolver(Scope.class, "img:/icons", new ResponseCompression());
+		resolvers.add(inner);
+		resolvers.add(outer);
+		resolvers.add(new ClasspathRootResolver(new ResponseCompression()));
+	}
+
+	@Test
+	public void findsResolverForPrefix()
+	{
+		assertThat(resolvers.getResolverForUrl("img:/test.png"), is(sameInstance((ResourceResolver) outer)));
+	}
+
+	@Test
+	public void longestPrefixWins()
+	{
+		assertThat(resolvers.getResolverForUrl("img:/icons:/test.png"), is(sameInstance((ResourceResolver) inner)));
+	}
+
+	@Test
+	public void unknownPrefixIsNotResolved()
+	{
+		assertThat(resolvers.getResolverForUrl("http://example.com/test.png"), is(nullValue()));
+		assertThat(resolvers.getResolverForUrl("imgs:/test.png"), is(nullValue()));
+		assertThat(resolvers.getResolverForUrl("res/test.png"), is(nullValue()));
+		assertThat(resolvers.getResolverForUrl(null), is(nullValue()));
+	}
+
+	@Test
+	public void prefixMustStartAtBeginning()
+	{
+		assertThat(resolvers.getResolverForUrl("x/img:/test.png"), is(nullValue()));
+	}
+
+	@Test
+	public void laterRegistrationReplacesSamePrefix()
+	{
+		final ClasspathResolver replacement = new ClasspathResolver(Scope.class, "img", new ResponseCompression());
+		resolvers.add(replacement);
+		assertThat(resolvers.getResolverForUrl("img:/test.png"), is(sameInstance((ResourceResolver) replacement)));
+	}
+
+	@Test
+	public void identicalPathsResolveToSameReference()
+	{
+		assertThat(outer.resolve("img:/test.png"), is(sameInstance(outer.resolve("img:/test.png"))));
+		assertThat(outer.resolveForCss("img:/test.css"), is(sameInstance(outer.resolveForCss("img:/test.css"))));
+		assertThat(outer.resolveForCss("img:/test.css"), is(not(sameInstance(outer.resolve("img:/test.css")))));
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class TagMatcherTest
+{
+	private final TagMatcher matcher = TagMatcher.EMPTY
+			.with("img", "src")
+			.with("object", "data", "src")
+			.with("x-very-long-custom-element-name-that-is-longer-than-sixty-three-chars", "href")
+			.with("über", "src");
+
+	@Test
+	public void configuredTagsAreMatched()
+	{
+		assertThat(matcher.getAttributes("img"), arrayContaining("src"));
+		assertThat(matcher.getAttributes("object"), arrayContaining("data", "src"));
+		assertThat(matcher.getAttributes("x-very-long-custom-element-name-that-is-longer-than-sixty-three-chars"),
+				arrayContaining("href"));
+		assertThat(matcher.getAttributes("über"), arrayContaining("src"));
+	}
+
+	@Test
+	public void otherTagsAreRejected()
+	{
+		assertThat(matcher.getAttributes("div"), nullValue());
+		assertThat(matcher.getAttributes("ins"), nullValue());
+		assertThat(matcher.getAttributes("IMG"), nullValue());
+		assertThat(matcher.getAttributes(""), nullValue());
+		assertThat(TagMatcher.EMPTY.getAttributes("img"), nullValue());
+	}
+}
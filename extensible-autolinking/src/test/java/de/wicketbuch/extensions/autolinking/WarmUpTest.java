@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016-2017 Carl-Eric Menzel <cmenzel@wicketbuch.de>
+ * and possibly other extensible-autolinking contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.wicketbuch.extensions.autolinking;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import javax.annotation.Nullable;
+
+import de.wicketbuch.extensions.autolinking.ExtensibleAutolinkerTest.ContextRootAutolinkingPage;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Test;
+
+public class WarmUpTest
+{
+	@Nullable
+	private WicketTester tester;
+
+	@Nullable
+	private JmxAutolinkerMetrics metrics;
+
+	@Test
+	public void stylesheetIsProcessedBeforeFirstRequest()
+	{
+		startTester(false);
+		assertStylesheetIsWarmedUp();
+	}
+
+	@Test
+	public void stylesheetIsProcessedBeforeFirstRequestWithComponentFreeRendering()
+	{
+		startTester(true);
+		assertStylesheetIsWarmedUp();
+		// the markers in the parsed markup must not be taken for package resources
+		assertThat(metrics.getPackageResourceMisses(), is(0L));
+		assertThat(ExtensibleAutolinker.get(tester.getApplication()).getPackageResourceCacheStatistics().getSize(),
+				is(0));
+	}
+
+	private void assertStylesheetIsWarmedUp()
+	{
+		final ExtensibleAutolinker autolinker = ExtensibleAutolinker.get(tester.getApplication());
+		assertThat(autolinker.getContextCssCacheStatistics().getSize(), is(1));
+
+		final long hits = autolinker.getContextCssCacheStatistics().getHits();
+		tester.executeUrl("/context/servlet/wicket/resource/org.apache.wicket.Application/ctx:/res/test.css");
+		assertThat(autolinker.getContextCssCacheStatistics().getHits(), greaterThan(hits));
+	}
+
+	private void startTester(final boolean componentFreeRendering)
+	{
+		tester = new WicketTester(new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+
+			@Override
+			protected void init()
+			{
+				super.init();
+				final ExtensibleAutolinker autolinker = ExtensibleAutolinker.configure(this);
+				metrics = new JmxAutolinkerMetrics(autolinker);
+				autolinker.setMetrics(metrics)
+						.setComponentFreeRendering(componentFreeRendering)
+						.addWarmUpClasses(ContextRootAutolinkingPage.class);
+			}
+		}, new File("src/test/webapp").getAbsolutePath());
+	}
+
+	@After
+	public void destroyTester()
+	{
+		if (tester != null)
+		{
+			tester.destroy();
+			tester = null;
+		}
+	}
+}